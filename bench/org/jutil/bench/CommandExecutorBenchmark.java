@@ -0,0 +1,117 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil.bench;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import org.jutil.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+/**
+ * Benchmarks of {@link CommandExecutor}: the startup of a trivial command, and the throughput
+ * of capturing and streaming the output of a command. Needs a Unix-like system (<code>sh</code>, 
+ * <code>head</code>).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandExecutorBenchmark {
+
+	/**
+	 * The startup time of a command without output, not parameterized.
+	 * 
+	 * @return the executor
+	 * @throws IOException in case of IO errors
+	 * @throws InterruptedException if interrupted
+	 */
+	@Benchmark
+	public CommandExecutor startup() throws IOException, InterruptedException {
+
+		return new CommandExecutor("true");
+	}
+
+	/**
+	 * The throughput of capturing the output in memory.
+	 * 
+	 * @param output		the command writing the output
+	 * @return the size of the output
+	 * @throws IOException in case of IO errors
+	 * @throws InterruptedException if interrupted
+	 */
+	@Benchmark
+	public int captureOutput(Output output) throws IOException, InterruptedException {
+
+		return new CommandExecutor(output.command).getOutputSize();
+	}
+
+	/**
+	 * The throughput of streaming the output lines to a consumer.
+	 * 
+	 * @param output		the command writing the output
+	 * @param blackhole		consumes the lines
+	 * @return the executor
+	 * @throws IOException in case of IO errors
+	 * @throws InterruptedException if interrupted
+	 */
+	@Benchmark
+	public CommandExecutor streamLines(Output output, Blackhole blackhole) throws IOException, InterruptedException {
+
+		return CommandExecutor.execute(blackhole::consume, output.command);
+	}
+
+	/**
+	 * The throughput of copying the output as bytes.
+	 * 
+	 * @param output		the command writing the output
+	 * @return the executor
+	 * @throws IOException in case of IO errors
+	 * @throws InterruptedException if interrupted
+	 */
+	@Benchmark
+	public CommandExecutor streamBytes(Output output) throws IOException, InterruptedException {
+
+		return CommandExecutor.execute(OutputStream.nullOutputStream(), output.command);
+	}
+
+	/**
+	 * The state of the throughput benchmarks, parameterized by the size of the output.
+	 */
+	@State(Scope.Benchmark)
+	public static class Output {
+
+		/** the number of bytes of output */
+		@Param({"1000", "1000000", "100000000"})
+		private long outputBytes;
+
+		/** the command writing <code>outputBytes</code> bytes of lines */
+		private String[] command;
+
+		/**
+		 * Creates the command.
+		 */
+		@Setup
+		public void setup() {
+
+			command = new String[] {"sh", "-c", "yes 'the quick brown fox jumps over the lazy dog' | head -c " 
+					+ outputBytes};
+		}
+	}
+}
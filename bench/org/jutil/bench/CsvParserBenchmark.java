@@ -0,0 +1,117 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil.bench;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.jutil.*;
+import org.jutil.io.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of {@link CsvParser} parsing CSV text from a <code>Reader</code> and from a <code>ByteBuffer</code>,
+ * compared to splitting the lines by {@link Strings#wrapToList(String, String, boolean, int)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CsvParserBenchmark {
+
+	/** the number of records */
+	@Param({"1000", "100000"})
+	private int records;
+
+	/** the CSV text */
+	private String text;
+	/** the CSV text as UTF-8 bytes */
+	private ByteBuffer bytes;
+
+	/**
+	 * Creates the CSV text: an id, a name, an amount and a quoted comment per record.
+	 */
+	@Setup
+	public void setup() {
+
+		Random random = new Random(42);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < records; i++) {
+			sb.append(i).append(",customer").append(random.nextInt(1000)).append(',')
+					.append(random.nextInt(100000) / 100.0).append(",\"ordered, paid\"\n");
+		}
+		text = sb.toString();
+		bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Parses the records from a <code>ByteBuffer</code>, summing the ids and amounts.
+	 * 
+	 * @return the sum
+	 * @throws IOException never
+	 */
+	@Benchmark
+	public double parseByteBuffer() throws IOException {
+
+		double[] sum = new double[1];
+		new CsvParser().parse(bytes.duplicate(), StandardCharsets.UTF_8, record -> {
+			sum[0] += record.getLong(0) + record.getDouble(2);
+		});
+		return sum[0];
+	}
+
+	/**
+	 * Parses the records from a <code>Reader</code>, summing the ids and amounts.
+	 * 
+	 * @return the sum
+	 * @throws IOException never
+	 */
+	@Benchmark
+	public double parseReader() throws IOException {
+
+		double[] sum = new double[1];
+		new CsvParser().parse(new StringReader(text), record -> {
+			sum[0] += record.getLong(0) + record.getDouble(2);
+		});
+		return sum[0];
+	}
+
+	/**
+	 * Splits the lines into fields by <code>Strings.wrapToList()</code>, summing the ids and amounts
+	 * (without quote handling).
+	 * 
+	 * @return the sum
+	 * @throws IOException never
+	 */
+	@Benchmark
+	public double splitWrapToList() throws IOException {
+
+		double sum = 0;
+		BufferedReader reader = new BufferedReader(new StringReader(text));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			List<String> fields = Strings.wrapToList(line, ",", false, 1);
+			sum += Long.parseLong(fields.get(0)) + Double.parseDouble(fields.get(2));
+		}
+		return sum;
+	}
+}
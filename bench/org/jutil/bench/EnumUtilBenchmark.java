@@ -0,0 +1,155 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil.bench;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.jutil.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of {@link EnumUtil}, using a small and a large enumeration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EnumUtilBenchmark {
+
+	/** a small enumeration */
+	public enum Small { RED, GREEN, BLUE };
+
+	/** a large enumeration */
+	public enum Large {
+		A00, A01, A02, A03, A04, A05, A06, A07, A08, A09, A10, A11, A12, A13, A14, A15,
+		A16, A17, A18, A19, A20, A21, A22, A23, A24, A25, A26, A27, A28, A29, A30, A31,
+		A32, A33, A34, A35, A36, A37, A38, A39, A40, A41, A42, A43, A44, A45, A46, A47,
+		A48, A49, A50, A51, A52, A53, A54, A55, A56, A57, A58, A59, A60, A61, A62, A63
+	};
+
+	/** a set of constants of the large enumeration */
+	private EnumSet<Large> largeSet;
+	/** the names of <code>largeSet</code> separated by commas */
+	private String largeNames;
+
+	/**
+	 * Creates the input data.
+	 */
+	@Setup
+	public void setup() {
+
+		largeSet = EnumSet.of(Large.A01, Large.A07, Large.A22, Large.A40, Large.A63);
+		largeNames = "A01, A07, A22, A40, A63";
+	}
+
+	@Benchmark
+	public String[] enumNamesLarge() {
+
+		return EnumUtil.enumNames(Large.class);
+	}
+
+	@Benchmark
+	public String[] enumNamesSmall() {
+
+		return EnumUtil.enumNames(Small.class);
+	}
+
+	@Benchmark
+	public ArrayList<String> enumToNameListLarge() {
+
+		return EnumUtil.enumToNameList(Large.class);
+	}
+
+	@Benchmark
+	public ArrayList<String> enumToNameListSmall() {
+
+		return EnumUtil.enumToNameList(Small.class);
+	}
+
+	@Benchmark
+	public Large findByNameIgnoreCaseLarge() {
+
+		return EnumUtil.findByNameIgnoreCase(Large.class, "a63");
+	}
+
+	@Benchmark
+	public Large findByNameLarge() {
+
+		return EnumUtil.findByName(Large.class, "A63");
+	}
+
+	@Benchmark
+	public Large findByNameMissingLarge() {
+
+		return EnumUtil.findByName(Large.class, "B63");
+	}
+
+	@Benchmark
+	public Small findByNameSmall() {
+
+		return EnumUtil.findByName(Small.class, "BLUE");
+	}
+
+	@Benchmark
+	public EnumSet<Large> fromBitmaskLarge() {
+
+		return EnumUtil.fromBitmask(Large.class, 0x8000_0100_0040_0082L);
+	}
+
+	@Benchmark
+	public EnumSet<Large> parseEnumSetLarge() {
+
+		return EnumUtil.parseEnumSet(Large.class, largeNames);
+	}
+
+	@Benchmark
+	public long toBitmaskLarge() {
+
+		return EnumUtil.toBitmask(largeSet);
+	}
+
+	@Benchmark
+	public byte[] toVarintLarge() {
+
+		return EnumUtil.toVarint(largeSet);
+	}
+
+	/**
+	 * The lookup of a constant by name as recommended by the <code>EnumUtil</code> hints, as a baseline.
+	 * 
+	 * @return the constant
+	 */
+	@Benchmark
+	public Large valueOfLarge() {
+
+		return Enum.valueOf(Large.class, "A63");
+	}
+
+	/**
+	 * The lookup of a constant by name as recommended by the <code>EnumUtil</code> hints, as a baseline.
+	 * 
+	 * @return the constant
+	 */
+	@Benchmark
+	public Small valueOfSmall() {
+
+		return Enum.valueOf(Small.class, "BLUE");
+	}
+}
@@ -0,0 +1,170 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil.bench;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.jutil.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of all public methods of {@link Strings}, using small, medium and huge inputs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StringsBenchmark {
+
+	/** the size of the input: the length of strings, the number of list elements */
+	@Param({"10", "1000", "100000"})
+	private int size;
+
+	/** a text of words and punctuation of <code>size</code> characters */
+	private String text;
+	/** a list of <code>size</code> elements */
+	private List<Integer> list;
+	/** a reused builder for the appending variants */
+	private StringBuilder sb;
+
+	/**
+	 * Creates the input data.
+	 */
+	@Setup
+	public void setup() {
+
+		String words = "lorem ipsum, dolor sit amet; consectetur adipiscing elit. ";
+		StringBuilder builder = new StringBuilder(size);
+		while (builder.length() < size) {
+			builder.append(words);
+		}
+		text = builder.substring(0, size);
+		list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			list.add(i);
+		}
+		sb = new StringBuilder();
+	}
+
+	@Benchmark
+	public String center() {
+
+		return Strings.center("[", "center", "]", size);
+	}
+
+	@Benchmark
+	public StringBuilder centerAppend() {
+
+		sb.setLength(0);
+		return Strings.center(sb, "[", "center", "]", size);
+	}
+
+	@Benchmark
+	public String fillLeft() {
+
+		return Strings.fillLeft("x", size, "-");
+	}
+
+	@Benchmark
+	public String fillLeftMultiCharFiller() {
+
+		return Strings.fillLeft("x", size, "-=");
+	}
+
+	@Benchmark
+	public String fillRight() {
+
+		return Strings.fillRight("x", size, "-");
+	}
+
+	@Benchmark
+	public StringBuilder fillRightAppend() {
+
+		sb.setLength(0);
+		return Strings.fillRight(sb, "x", size, "-");
+	}
+
+	@Benchmark
+	public String indent() {
+
+		return Strings.indent("\t", 3, text);
+	}
+
+	@Benchmark
+	public String listToString() {
+
+		return Strings.listToString(list, "\t", "\n", false);
+	}
+
+	@Benchmark
+	public StringBuilder listToStringAppend() {
+
+		sb.setLength(0);
+		return Strings.listToString(sb, list, "\t", "\n", false);
+	}
+
+	@Benchmark
+	public String repeat() {
+
+		return Strings.repeat(size, "ab");
+	}
+
+	@Benchmark
+	public String stripIfEndsWith() {
+
+		return Strings.stripIfEndsWith(text, text.substring(text.length() / 2));
+	}
+
+	@Benchmark
+	public String stripIfStartsWith() {
+
+		return Strings.stripIfStartsWith(text, text.substring(0, text.length() / 2));
+	}
+
+	@Benchmark
+	public String wrapByColumnNegative() {
+
+		return Strings.wrapByColumn(text, " ", true, -80);
+	}
+
+	@Benchmark
+	public String wrapByColumnPositive() {
+
+		return Strings.wrapByColumn(text, " ", true, 80);
+	}
+
+	@Benchmark
+	public List<String> wrapToList() {
+
+		return Strings.wrapToList(text, " ,;.", false);
+	}
+
+	@Benchmark
+	public List<String> wrapToListCount() {
+
+		return Strings.wrapToList(text, " ", true, 8);
+	}
+
+	@Benchmark
+	public String wrapToString() {
+
+		return Strings.wrapToString(text, " ,;.", true);
+	}
+}
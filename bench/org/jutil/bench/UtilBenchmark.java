@@ -0,0 +1,106 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil.bench;
+
+import java.util.concurrent.*;
+
+import org.jutil.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of the time stamp creation of {@link Util}, {@link TimeStamp} and {@link CachedClock},
+ * single threaded and contended.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UtilBenchmark {
+
+	/** a reused builder for the appending variants */
+	private final StringBuilder sb = new StringBuilder(64);
+	/** a reused buffer for the writing variants */
+	private final byte[] bytes = new byte[64];
+
+	@Benchmark
+	public StringBuilder appendTimeStampMillis() {
+
+		sb.setLength(0);
+		return TimeStamp.DATE_TIME_MILLIS.append(sb);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public StringBuilder appendTimeStampMillisContended() {
+
+		sb.setLength(0);
+		return TimeStamp.DATE_TIME_MILLIS.append(sb);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public String clockDateTimeStampContended() {
+
+		return Util.clock().dateTimeStamp();
+	}
+
+	@Benchmark
+	public long clockMillis() {
+
+		return Util.clock().millis();
+	}
+
+	@Benchmark
+	public long currentTimeMillis() {
+
+		return System.currentTimeMillis();
+	}
+
+	@Benchmark
+	public String createDateAndTimeStamp() {
+
+		return Util.createDateAndTimeStamp();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public String createDateAndTimeStampContended() {
+
+		return Util.createDateAndTimeStamp();
+	}
+
+	@Benchmark
+	public String createTimeStamp() {
+
+		return Util.createTimeStamp();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public String createTimeStampContended() {
+
+		return Util.createTimeStamp();
+	}
+
+	@Benchmark
+	public int writeTimeStampMillis() {
+
+		return TimeStamp.DATE_TIME_MILLIS.write(bytes, 0);
+	}
+}
@@ -0,0 +1,227 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil;
+
+import java.time.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * A coarse clock for hot paths: a background ticker (a daemon thread) publishes the current time
+ * and its pre-formatted time stamps at a given resolution. Reading the time or a time stamp
+ * is a volatile read, without any system call and without creating objects.<br/>
+ * The time is late by at most the resolution (plus scheduling delays), use an exact clock
+ * (resolution zero) where this is not acceptable.
+ * <pre>
+ * Examples:
+ * 
+ * 		long now = Util.clock().millis();
+ * 		String stamp = Util.clock().dateTimeStamp();		// "2023-08-17 14:05:59"
+ * 
+ * 		try (CachedClock clock = new CachedClock(Duration.ofMillis(100))) {
+ * 			CachedClock.Snapshot snapshot = clock.snapshot();	// time and stamps of the same tick
+ * 			...
+ * 		}
+ * </pre>
+ */
+public class CachedClock implements AutoCloseable {
+
+	/** 
+	 * the resolution of the shared clock {@link Util#clock()}: the system property 
+	 * "org.jutil.clock.resolution" in milliseconds (zero for exact time), or 10 milliseconds 
+	 */
+	public static final Duration DEFAULT_RESOLUTION = Duration.ofMillis(Long.getLong("org.jutil.clock.resolution", 10));
+
+	/** the number of clocks, for the thread names */
+	private static final AtomicInteger CLOCK_NUMBER = new AtomicInteger();
+
+	/** the resolution, zero for exact time */
+	private final Duration resolution;
+	/** the ticker thread, or null for exact time */
+	private final Thread ticker;
+	/** the latest published time */
+	private volatile Snapshot snapshot;
+	/** true after closing */
+	private volatile boolean closed;
+
+	/**
+	 * Construction of a clock and start of its ticker.
+	 * 
+	 * @param resolution		the time between two ticks, zero (or negative) for an exact clock
+	 * 							without a ticker, reading the system time on each call
+	 */
+	public CachedClock(Duration resolution) {
+
+		this.resolution = resolution.isNegative() ? Duration.ZERO : resolution;
+		snapshot = new Snapshot(System.currentTimeMillis());
+		if (this.resolution.isZero()) {
+			ticker = null;
+			return;
+		}
+		long nanos = this.resolution.toNanos();
+		ticker = new Thread(() -> {
+			while (!closed) {
+				LockSupport.parkNanos(nanos);
+				long millis = System.currentTimeMillis();
+				if (millis != snapshot.millis) {
+					snapshot = new Snapshot(millis);
+				}
+			}
+		}, "CachedClock-" + CLOCK_NUMBER.incrementAndGet());
+		ticker.setDaemon(true);
+		ticker.start();
+	}
+
+	/**
+	 * Stops the ticker, the clock reads the system time on each call afterwards.
+	 */
+	@Override
+	public void close() {
+
+		closed = true;
+		if (ticker != null) {
+			LockSupport.unpark(ticker);
+		}
+	}
+
+	/**
+	 * Returns the date and time stamp of the latest tick like "yyyy-MM-dd HH:mm:ss",
+	 * see {@link TimeStamp#DATE_TIME}.
+	 * 
+	 * @return the date and time stamp
+	 */
+	public String dateTimeStamp() {
+
+		return snapshot().dateTimeStamp;
+	}
+
+	/**
+	 * Returns the resolution of the clock.
+	 * 
+	 * @return the time between two ticks, zero for an exact clock
+	 */
+	public Duration getResolution() {
+
+		return resolution;
+	}
+
+	/**
+	 * Returns the time of the latest tick as an <code>Instant</code>.
+	 * 
+	 * @return the instant
+	 */
+	public Instant instant() {
+
+		return Instant.ofEpochMilli(millis());
+	}
+
+	/**
+	 * Returns true if the clock reads the system time on each call (resolution zero or closed).
+	 * 
+	 * @return true if exact
+	 */
+	public boolean isExact() {
+
+		return ticker == null || closed;
+	}
+
+	/**
+	 * Returns the time of the latest tick in milliseconds since the epoch,
+	 * like <code>System.currentTimeMillis()</code>.
+	 * 
+	 * @return the milliseconds since the epoch
+	 */
+	public long millis() {
+
+		return isExact() ? System.currentTimeMillis() : snapshot.millis;
+	}
+
+	/**
+	 * Returns the time and the time stamps of the latest tick, consistent to each other.
+	 * 
+	 * @return the snapshot
+	 */
+	public Snapshot snapshot() {
+
+		return isExact() ? new Snapshot(System.currentTimeMillis()) : snapshot;
+	}
+
+	/**
+	 * Returns the time stamp of the latest tick like "HH:mm:ss", see {@link TimeStamp#TIME}.
+	 * 
+	 * @return the time stamp
+	 */
+	public String timeStamp() {
+
+		return snapshot().timeStamp;
+	}
+
+	/**
+	 * The time of a tick and its time stamps, immutable.
+	 */
+	public static class Snapshot {
+
+		/** the milliseconds since the epoch */
+		private final long millis;
+		/** the date and time stamp */
+		private final String dateTimeStamp;
+		/** the time stamp */
+		private final String timeStamp;
+
+		/**
+		 * Construction of a snapshot, the time stamps of a second are formatted once, see {@link TimeStamp}.
+		 * 
+		 * @param millis		the milliseconds since the epoch
+		 */
+		private Snapshot(long millis) {
+
+			this.millis = millis;
+			dateTimeStamp = TimeStamp.DATE_TIME.format(millis);
+			timeStamp = TimeStamp.TIME.format(millis);
+		}
+
+		/**
+		 * Returns the date and time stamp like "yyyy-MM-dd HH:mm:ss".
+		 * 
+		 * @return the date and time stamp
+		 */
+		public String getDateTimeStamp() {
+
+			return dateTimeStamp;
+		}
+
+		/**
+		 * Returns the milliseconds since the epoch.
+		 * 
+		 * @return the milliseconds
+		 */
+		public long getMillis() {
+
+			return millis;
+		}
+
+		/**
+		 * Returns the time stamp like "HH:mm:ss".
+		 * 
+		 * @return the time stamp
+		 */
+		public String getTimeStamp() {
+
+			return timeStamp;
+		}
+	}
+}
@@ -17,7 +17,15 @@
 package org.jutil;
 
 import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.time.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import org.jutil.app.*;
 
 /**
  * An executor to process operation system (shell) commands.<br/>
@@ -37,18 +45,66 @@ import java.util.*;
  * 				System.out.println("Exit code: " + executor.getExitCode());
  *				System.out.println("Output:\n" + executor.getOutput());
  * </pre>
+ * The output is buffered as bytes and decoded (using the charset of the options) only on demand, 
+ * by <code>getOutput()</code> or <code>getLines()</code>.<br/>
+ * Commands with a huge output should not be buffered in memory, use the streaming methods instead:
+ * <pre>
+ * 			int exitCode = CommandExecutor.execute(line -&gt; process(line), "bash", "-c", "find /").getExitCode();
+ * 
+ * 			try (Stream&lt;String&gt; lines = CommandExecutor.lines("bash", "-c", "find /")) {
+ * 				lines.filter(line -&gt; line.endsWith(".log")).forEach(System.out::println);
+ * 			}
+ * </pre>
+ * The error output (stderr) is read concurrently to the output, by default it is captured separately:
+ * <pre>
+ * 			System.out.println("Errors:\n" + executor.getErrorOutput());
+ * </pre>
+ * {@link CommandOptions} control the handling of the error output (separate, merged, streamed or discarded)
+ * and a timeout, after which the process and all its descendants are killed:
+ * <pre>
+ * 			CommandOptions options = new CommandOptions().timeout(Duration.ofMinutes(5));
+ * 			CommandExecutor executor = new CommandExecutor(options, "bash", "-c", "make");
+ * 			if (executor.isTimedOut()) {
+ * 				...
+ * </pre>
+ * Commands can also be executed asynchronously, without blocking the calling thread:
+ * <pre>
+ * 			CommandExecutor.executeAsync("bash", "-c", "ls -la")
+ * 				.thenAccept(executor -&gt; System.out.println(executor.getOutput()));
+ * </pre>
+ * The spawn latency, the run time, the bytes read and the exit codes of all executions are recorded 
+ * to {@link Metrics#getDefault()}, see {@link CommandOptions#metrics(Metrics)}:
+ * <pre>
+ * 			System.out.println(Metrics.getDefault().toText());
+ * </pre>
  */
 public class CommandExecutor {
 	
+	/** the default executor for asynchronous execution, using virtual threads if available */
+	private static final Executor DEFAULT_EXECUTOR = Util.newThreadPerTaskExecutor();
+	
 	/** the exit code after execution of the command */
 	private int exitCode;
-	/** the output after the execution of the command */
+	/** the charset of the output */
+	private Charset charset = Charset.defaultCharset();
+	/** the output bytes after the execution of the command, null if the output has not been buffered */
+	private OutputBuffer outputBuffer;
+	/** the output after the execution of the command, decoded on demand */
 	private String output;
-	/** the output as array list after the execution of the command */
+	/** the output as array list after the execution of the command, created on demand */
 	private ArrayList<String> lines;
+	/** the error output after the execution of the command, created on demand from the error lines */
+	private String errorOutput;
+	/** the error output as array list after the execution of the command */
+	private ArrayList<String> errorLines = new ArrayList<>();
+	/** true if the process has been killed due to a timeout */
+	private volatile boolean timedOut;
+	/** the process of an asynchronous execution, null before it has been started */
+	private volatile Process process;
 	
 	/**
-	 * Construction of the executor.<br/>
+	 * Construction of the executor, the command is executed and the whole output is buffered in memory.<br/>
+	 * The error output is captured separately, see {@link #getErrorOutput()}.<br/>
 	 * This call is OS dependent (examples):
 	 * <pre>
 	 * 		Linux, Unix, MacOS, others:
@@ -66,19 +122,664 @@ public class CommandExecutor {
 	 */
 	public CommandExecutor(String... cmdAndParameters) throws IOException, InterruptedException{
 
+		this(new CommandOptions(), cmdAndParameters);
+	}
+
+	/**
+	 * Construction of the executor, the command is executed using options 
+	 * and the whole output is buffered in memory.
+	 * <pre>
+	 * 		CommandOptions options = new CommandOptions().errorMode(CommandOptions.ErrorMode.MERGED);
+	 * 		CommandExecutor executor = new CommandExecutor(options, "bash", "-c", "make");
+	 * </pre>
+	 * 
+	 * @param options				the options of the execution
+	 * @param cmdAndParameters		the shell, options and the command to execute
+	 * @throws IOException in case of IO errors
+	 * @throws InterruptedException if the process has been interrupted
+	 */
+	public CommandExecutor(CommandOptions options, String... cmdAndParameters) throws IOException, InterruptedException {
+
+		charset = options.getCharset();
+		outputBuffer = new OutputBuffer();
+		run(options, outputBuffer::readFrom, cmdAndParameters);
+	}
+
+	/**
+	 * Construction of an executor for the static execute methods, the command is not executed.
+	 */
+	private CommandExecutor() {
+
+	}
+
+	/**
+	 * Executes a command asynchronously, the calling thread is not blocked. The output is read
+	 * using the default executor (virtual threads if the Java runtime supports them, 
+	 * see {@link Util#newThreadPerTaskExecutor()}), the exit is awaited using <code>Process.onExit()</code>.
+	 * <pre>
+	 * 		CommandExecutor.executeAsync("bash", "-c", "ls -la")
+	 * 			.thenAccept(executor -&gt; System.out.println(executor.getOutput()));
+	 * </pre>
+	 * 
+	 * @param cmdAndParameters		the shell, options and the command to execute
+	 * @return a future completing with the executor containing the exit code and the output,
+	 * 		or completing exceptionally in case of IO errors
+	 */
+	public static CompletableFuture<CommandExecutor> executeAsync(String... cmdAndParameters) {
+
+		return executeAsync(new CommandOptions(), cmdAndParameters);
+	}
+
+	/**
+	 * Executes a command asynchronously, the calling thread is not blocked. The process is started
+	 * and its output is read using <code>executor</code>, the exit is awaited using <code>Process.onExit()</code>.
+	 * 
+	 * @param executor				the executor used to start the process and read the output
+	 * @param cmdAndParameters		the shell, options and the command to execute
+	 * @return a future completing with the executor containing the exit code and the output,
+	 * 		or completing exceptionally in case of IO errors
+	 */
+	public static CompletableFuture<CommandExecutor> executeAsync(Executor executor, String... cmdAndParameters) {
+
+		return executeAsync(new CommandOptions().executor(executor), cmdAndParameters);
+	}
+
+	/**
+	 * Executes a command asynchronously using options, the calling thread is not blocked. The process 
+	 * is started and its output is read using the executor of the options (virtual threads by default), 
+	 * the exit is awaited using <code>Process.onExit()</code>.<br/>
+	 * Cancelling the returned future kills the process and all its descendants.
+	 * 
+	 * @param options				the options of the execution
+	 * @param cmdAndParameters		the shell, options and the command to execute
+	 * @return a future completing with the executor containing the exit code and the output,
+	 * 		or completing exceptionally in case of IO errors
+	 */
+	public static CompletableFuture<CommandExecutor> executeAsync(CommandOptions options, String... cmdAndParameters) {
+
+		CommandExecutor commandExecutor = new CommandExecutor();
+		commandExecutor.charset = options.getCharset();
+		commandExecutor.outputBuffer = new OutputBuffer();
+		CompletableFuture<CommandExecutor> result = new CompletableFuture<>();
+		executor(options).execute(() -> {
+			try {
+				long startNanos = System.nanoTime();
+				Process process = processBuilder(options, cmdAndParameters).start();
+				long spawnedNanos = recordSpawn(options, startNanos);
+				commandExecutor.process = process;
+				if (result.isDone()) {
+					// cancelled before the process has been started
+					killProcessTreeAsync(process, options);
+					return;
+				}
+				CompletableFuture<Boolean> finished = commandExecutor.watchTimeout(List.of(process), options);
+				try {
+					CompletableFuture<Void> errors = commandExecutor.readErrors(process, options.getErrorMode(), options);
+					commandExecutor.outputBuffer.readFrom(countBytes(process.getInputStream(), options, "command.outputBytes"));
+					process.onExit().thenCombine(errors, (p, v) -> p.exitValue()).whenComplete((exitCode, throwable) -> {
+						finished.complete(false);
+						if (throwable != null) {
+							result.completeExceptionally(throwable);
+						} else {
+							commandExecutor.exitCode = exitCode;
+							recordExit(options, spawnedNanos, exitCode);
+							result.complete(commandExecutor);
+						}
+					});
+				} catch (IOException | RuntimeException e) {
+					// like the finally block of run(): the process must not outlive a failed execution
+					finished.complete(false);
+					killProcessTreeAsync(process, options);
+					throw e;
+				}
+			} catch (IOException | RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		});
+		result.whenComplete((r, throwable) -> {
+			Process process = commandExecutor.process;
+			if (result.isCancelled() && process != null) {
+				killProcessTreeAsync(process, options);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Executes a command and passes each line of the output (without any newlines) to a consumer,
+	 * as soon as it is read. The output is not buffered, therefore the memory used is independent 
+	 * of the size of the output. The error output is captured separately.
+	 * <pre>
+	 * 		int exitCode = CommandExecutor.execute(line -&gt; System.out.println(line), "bash", "-c", "ls -la")
+	 * 				.getExitCode();
+	 * </pre>
+	 * 
+	 * @param lineConsumer			the consumer of the output lines
+	 * @param cmdAndParameters		the shell, options and the command to execute
+	 * @return the executor containing the exit code and the error output, but no output
+	 * @throws IOException in case of IO errors
+	 * @throws InterruptedException if the process has been interrupted
+	 */
+	public static CommandExecutor execute(Consumer<String> lineConsumer, String... cmdAndParameters) 
+			throws IOException, InterruptedException {
+
+		return execute(new CommandOptions(), lineConsumer, cmdAndParameters);
+	}
+
+	/**
+	 * Executes a command using options and passes each line of the output (without any newlines) 
+	 * to a consumer, as soon as it is read. The output is not buffered, therefore the memory used 
+	 * is independent of the size of the output.
+	 * 
+	 * @param options				the options of the execution
+	 * @param lineConsumer			the consumer of the output lines
+	 * @param cmdAndParameters		the shell, options and the command to execute
+	 * @return the executor containing the exit code and the error output, but no output
+	 * @throws IOException in case of IO errors
+	 * @throws InterruptedException if the process has been interrupted
+	 */
+	public static CommandExecutor execute(CommandOptions options, Consumer<String> lineConsumer, 
+			String... cmdAndParameters) throws IOException, InterruptedException {
+
+		CommandExecutor executor = new CommandExecutor();
+		executor.run(options, in -> readLines(in, options.getCharset(), lineConsumer), cmdAndParameters);
+		return executor;
+	}
+
+	/**
+	 * Executes a command and copies the output as it is (bytes, in chunks) to an <code>OutputStream</code>,
+	 * e.g. a file. The output is not buffered, therefore the memory used is independent 
+	 * of the size of the output. The stream is not closed. The error output is captured separately.
+	 * <pre>
+	 * 		try (OutputStream out = new FileOutputStream("dump.sql")) {
+	 * 			int exitCode = CommandExecutor.execute(out, "pg_dump", "mydb").getExitCode();
+	 * 		}
+	 * </pre>
+	 * 
+	 * @param out					the stream receiving the output
+	 * @param cmdAndParameters		the shell, options and the command to execute
+	 * @return the executor containing the exit code and the error output, but no output
+	 * @throws IOException in case of IO errors
+	 * @throws InterruptedException if the process has been interrupted
+	 */
+	public static CommandExecutor execute(OutputStream out, String... cmdAndParameters) 
+			throws IOException, InterruptedException {
+
+		return execute(new CommandOptions(), out, cmdAndParameters);
+	}
+
+	/**
+	 * Executes a command using options and copies the output as it is (bytes, in chunks) 
+	 * to an <code>OutputStream</code>, e.g. a file. The output is not buffered, therefore the memory used 
+	 * is independent of the size of the output. The stream is not closed.
+	 * 
+	 * @param options				the options of the execution
+	 * @param out					the stream receiving the output
+	 * @param cmdAndParameters		the shell, options and the command to execute
+	 * @return the executor containing the exit code and the error output, but no output
+	 * @throws IOException in case of IO errors
+	 * @throws InterruptedException if the process has been interrupted
+	 */
+	public static CommandExecutor execute(CommandOptions options, OutputStream out, 
+			String... cmdAndParameters) throws IOException, InterruptedException {
+
+		CommandExecutor executor = new CommandExecutor();
+		executor.run(options, in -> in.transferTo(out), cmdAndParameters);
+		return executor;
+	}
+
+	/**
+	 * Executes a command using options and redirects the output directly into a file. 
+	 * The output is written by the process, it does not pass the JVM at all.
+	 * <pre>
+	 * 		CommandExecutor.execute(new CommandOptions(), Path.of("dump.sql"), "pg_dump", "mydb");
+	 * </pre>
+	 * 
+	 * @param options				the options of the execution
+	 * @param outputFile			the file receiving the output, created or truncated
+	 * @param cmdAndParameters		the shell, options and the command to execute
+	 * @return the executor containing the exit code and the error output, but no output
+	 * @throws IOException in case of IO errors
+	 * @throws InterruptedException if the process has been interrupted
+	 */
+	public static CommandExecutor execute(CommandOptions options, Path outputFile, 
+			String... cmdAndParameters) throws IOException, InterruptedException {
+
+		ProcessBuilder processBuilder = processBuilder(options, cmdAndParameters);
+		processBuilder.redirectOutput(outputFile.toFile());
+		CommandExecutor executor = new CommandExecutor();
+		executor.run(options, List.of(processBuilder), null, in -> {}, false);
+		return executor;
+	}
+
+	/**
+	 * Executes a command and returns the output lines (without any newlines) as a lazily 
+	 * populated <code>Stream</code>, the lines are read from the process while the stream is consumed.<br/>
+	 * The stream should be closed (e.g. using try-with-resources), this also destroys the process 
+	 * if it is still alive. The exit code is not available, use {@link #execute(Consumer, String...)} if needed.
+	 * The error output is discarded.
+	 * <pre>
+	 * 		try (Stream&lt;String&gt; lines = CommandExecutor.lines("bash", "-c", "find /")) {
+	 * 			long count = lines.filter(line -&gt; line.endsWith(".log")).count();
+	 * 		}
+	 * </pre>
+	 * 
+	 * @param cmdAndParameters		the shell, options and the command to execute
+	 * @return the stream of output lines
+	 * @throws IOException in case of IO errors
+	 */
+	public static Stream<String> lines(String... cmdAndParameters) throws IOException {
+
+		return lines(new CommandOptions().errorMode(CommandOptions.ErrorMode.DISCARD), cmdAndParameters);
+	}
+
+	/**
+	 * Executes a command using options and returns the output lines (without any newlines) as a lazily 
+	 * populated <code>Stream</code>, the lines are read from the process while the stream is consumed.<br/>
+	 * The stream should be closed (e.g. using try-with-resources), this also kills the process 
+	 * and its descendants if it is still alive. The exit code is not available. The error output can be merged, streamed 
+	 * or discarded, <code>ErrorMode.SEPARATE</code> is not possible without a result and discards it (by the OS).
+	 * 
+	 * @param options				the options of the execution
+	 * @param cmdAndParameters		the shell, options and the command to execute
+	 * @return the stream of output lines
+	 * @throws IOException in case of IO errors
+	 */
+	public static Stream<String> lines(CommandOptions options, String... cmdAndParameters) throws IOException {
+
+		CommandOptions.ErrorMode errorMode = options.getErrorMode();
+		ProcessBuilder processBuilder = processBuilder(options, cmdAndParameters);
+		if (errorMode == CommandOptions.ErrorMode.SEPARATE) {
+			// there is no result to capture it, discarded by the OS instead of collecting it in memory
+			errorMode = CommandOptions.ErrorMode.DISCARD;
+			processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
+		}
+		long startNanos = System.nanoTime();
+		Process process = processBuilder.start();
+		long spawnedNanos = recordSpawn(options, startNanos);
+		process.onExit().thenAccept(p -> recordExit(options, spawnedNanos, p.exitValue()));
+		new CommandExecutor().readErrors(process, errorMode, options);
+		InputStream in = countBytes(process.getInputStream(), options, "command.outputBytes");
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, options.getCharset()));
+		return reader.lines().onClose(() -> {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} finally {
+				if (process.isAlive()) {
+					killProcessTreeAsync(process, options);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Wraps a stream of a process, counting the bytes read by a counter of the metrics of the options.
+	 * 
+	 * @param in				the output or error output stream of the process
+	 * @param options			the options of the execution
+	 * @param counterName		the name of the counter
+	 * @return the counting stream, or the stream itself if no metrics are recorded
+	 */
+	private static InputStream countBytes(InputStream in, CommandOptions options, String counterName) {
+
+		Metrics metrics = options.getMetrics();
+		return metrics != null ? new CountingInputStream(in, metrics.counter(counterName)) : in;
+	}
+
+	/**
+	 * Returns the executor of the options, or the default executor.
+	 * 
+	 * @param options		the options of the execution
+	 * @return the executor
+	 */
+	private static Executor executor(CommandOptions options) {
+
+		return options.getExecutor() != null ? options.getExecutor() : DEFAULT_EXECUTOR;
+	}
+
+	/**
+	 * Kills a process and all its descendants (children, grand-children, ...). At first the
+	 * processes are requested to terminate gracefully, processes still alive after the grace period 
+	 * are killed forcibly (e.g. SIGTERM, then SIGKILL on Unix-like systems).<br/>
+	 * Note: this call blocks until all processes have terminated or the grace period has elapsed.
+	 * 
+	 * @param process			the process
+	 * @param gracePeriod		the time to wait for a graceful termination, zero to kill forcibly at once
+	 * @throws InterruptedException if the current thread has been interrupted while waiting, 
+	 * 		the processes are killed forcibly in this case
+	 */
+	public static void killProcessTree(Process process, Duration gracePeriod) throws InterruptedException {
+
+		// collect the descendants first, they are re-parented after the process has terminated
+		List<ProcessHandle> handles = new ArrayList<>();
+		process.descendants().forEach(handles::add);
+		handles.add(process.toHandle());
+		if (gracePeriod.isZero() || gracePeriod.isNegative()) {
+			handles.forEach(ProcessHandle::destroyForcibly);
+			return;
+		}
+		List<CompletableFuture<ProcessHandle>> exits = new ArrayList<>();
+		for (ProcessHandle handle : handles) {
+			if (!handle.destroy()) {
+				// graceful termination is not supported on this platform
+				handle.destroyForcibly();
+			}
+			exits.add(handle.onExit());
+		}
+		try {
+			CompletableFuture.allOf(exits.toArray(new CompletableFuture<?>[0]))
+					.get(gracePeriod.toNanos(), TimeUnit.NANOSECONDS);
+		} catch (ExecutionException | TimeoutException e) {
+			// still alive, kill it forcibly
+		} finally {
+			for (ProcessHandle handle : handles) {
+				if (handle.isAlive()) {
+					handle.destroyForcibly();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Kills a process and all its descendants using the executor of the options, 
+	 * without blocking the current thread.
+	 * 
+	 * @param process		the process
+	 * @param options		the options of the execution
+	 */
+	private static void killProcessTreeAsync(Process process, CommandOptions options) {
+
+		executor(options).execute(() -> {
+			try {
+				killProcessTree(process, options.getKillGracePeriod());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+	}
+
+	/**
+	 * Reads the lines of an <code>InputStream</code> until the end and passes them to a consumer.
+	 * 
+	 * @param in				the stream of a process (output or error output)
+	 * @param charset			the charset of the stream
+	 * @param lineConsumer		the consumer of the lines
+	 * @throws IOException in case of IO errors
+	 */
+	static void readLines(InputStream in, Charset charset, Consumer<String> lineConsumer) throws IOException {
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineConsumer.accept(line);
+			}
+		}
+	}
+
+	/**
+	 * Returns a process builder for a command, configured by the options.
+	 * 
+	 * @param options				the options of the execution
+	 * @param cmdAndParameters		the shell, options and the command to execute
+	 * @return the process builder
+	 * @throws IllegalStateException if the error output is streamed, but there is no error consumer
+	 */
+	static ProcessBuilder processBuilder(CommandOptions options, String... cmdAndParameters) 
+			throws IllegalStateException {
+
 		ProcessBuilder processBuilder = new ProcessBuilder();
 		processBuilder.command(cmdAndParameters);
-		Process process = processBuilder.start();
-		StringBuilder sb = new StringBuilder();
-		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-		String line;
-		lines = new ArrayList<>();
-		while ((line = reader.readLine()) != null) {
-			lines.add(line);
-			sb.append(line + "\n");
+		switch (options.getErrorMode()) {
+		case MERGED:
+			processBuilder.redirectErrorStream(true);
+			break;
+		case STREAMED:
+			if (options.getErrorConsumer() == null) {
+				throw new IllegalStateException("ErrorMode.STREAMED requires an error consumer");
+			}
+			break;
+		case DISCARD:
+			processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
+			break;
+		default:
+			break;
+		}
+		return processBuilder;
+	}
+
+	/**
+	 * Records the exit of a process to the metrics of the options (if any): the run time and the exit code.
+	 * 
+	 * @param options			the options of the execution
+	 * @param startNanos		the <code>System.nanoTime()</code> after the process has been started
+	 * @param exitCode			the exit code
+	 */
+	private static void recordExit(CommandOptions options, long startNanos, int exitCode) {
+
+		Metrics metrics = options.getMetrics();
+		if (metrics != null) {
+			metrics.histogram("command.run").record(System.nanoTime() - startNanos);
+			metrics.counter("command.exitCode." + exitCode).increment();
+		}
+	}
+
+	/**
+	 * Records the start of processes to the metrics of the options (if any): the spawn latency.
+	 * 
+	 * @param options			the options of the execution
+	 * @param startNanos		the <code>System.nanoTime()</code> before the processes have been started
+	 * @return the current <code>System.nanoTime()</code>, the start of the run time
+	 */
+	private static long recordSpawn(CommandOptions options, long startNanos) {
+
+		long nanos = System.nanoTime();
+		Metrics metrics = options.getMetrics();
+		if (metrics != null) {
+			metrics.histogram("command.spawn").record(nanos - startNanos);
+		}
+		return nanos;
+	}
+
+	/**
+	 * Executes a pipeline of commands, the stages are connected by OS pipes, see {@link CommandPipeline}.
+	 * 
+	 * @param options			the options of the execution
+	 * @param builders			the process builders of the stages, in pipeline order
+	 * @param inputWriter		the writer of the input of the first stage, or null
+	 * @param outputReader		the reader of the output of the last stage, or null to buffer the output
+	 * @param pipefail			if true, the exit code is the one of the last stage with a non-zero exit code, 
+	 * 							otherwise the one of the last stage
+	 * @return the executor containing the exit code, the error output of all stages and the (buffered) output
+	 * @throws IOException in case of IO errors
+	 * @throws InterruptedException if the process has been interrupted
+	 */
+	static CommandExecutor executePipeline(CommandOptions options, List<ProcessBuilder> builders, 
+			InputWriter inputWriter, OutputReader outputReader, boolean pipefail) throws IOException, InterruptedException {
+
+		CommandExecutor executor = new CommandExecutor();
+		if (outputReader == null) {
+			executor.charset = options.getCharset();
+			executor.outputBuffer = new OutputBuffer();
+			outputReader = executor.outputBuffer::readFrom;
+		}
+		executor.run(options, builders, inputWriter, outputReader, pipefail);
+		return executor;
+	}
+
+	/**
+	 * Starts reading the error output of a process concurrently to the output, 
+	 * depending on the error mode.
+	 * 
+	 * @param process		the process
+	 * @param errorMode		the error mode for this process
+	 * @param options		the options of the execution
+	 * @return a future completing after the error output has been read
+	 */
+	private CompletableFuture<Void> readErrors(Process process, CommandOptions.ErrorMode errorMode, 
+			CommandOptions options) {
+
+		Consumer<String> errorConsumer;
+		switch (errorMode) {
+		case SEPARATE:
+			errorConsumer = line -> {
+				synchronized (errorLines) {
+					errorLines.add(line);
+				}
+			};
+			break;
+		case STREAMED:
+			// the stages of a pipeline are read concurrently
+			Consumer<String> consumer = options.getErrorConsumer();
+			errorConsumer = line -> {
+				synchronized (consumer) {
+					consumer.accept(line);
+				}
+			};
+			break;
+		default:
+			// merged or discarded, nothing to read
+			return CompletableFuture.completedFuture(null);
+		}
+		return CompletableFuture.runAsync(() -> {
+			try {
+				readLines(countBytes(process.getErrorStream(), options, "command.errorBytes"), options.getCharset(), 
+						errorConsumer);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, executor(options));
+	}
+
+	/**
+	 * Starts watching the timeout of the options (if any): the process trees are killed
+	 * if the returned future has not been completed until the timeout elapses.
+	 * 
+	 * @param processes		the processes
+	 * @param options		the options of the execution
+	 * @return the future to be completed (with false) if the execution has finished
+	 */
+	private CompletableFuture<Boolean> watchTimeout(List<Process> processes, CommandOptions options) {
+
+		CompletableFuture<Boolean> finished = new CompletableFuture<>();
+		if (options.getTimeout() != null) {
+			finished.completeOnTimeout(true, options.getTimeout().toNanos(), TimeUnit.NANOSECONDS)
+					.thenAcceptAsync(expired -> {
+						if (expired) {
+							timedOut = true;
+							if (options.getMetrics() != null) {
+								options.getMetrics().counter("command.timeouts").increment();
+							}
+							try {
+								for (Process process : processes) {
+									killProcessTree(process, options.getKillGracePeriod());
+								}
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+						}
+					}, executor(options));
+		}
+		return finished;
+	}
+
+	/**
+	 * Executes the command: starts the process, reads the output and the error output concurrently
+	 * and waits for the exit of the process.
+	 * 
+	 * @param options				the options of the execution
+	 * @param outputReader			the reader of the output
+	 * @param cmdAndParameters		the shell, options and the command to execute
+	 * @throws IOException in case of IO errors
+	 * @throws InterruptedException if the process has been interrupted
+	 */
+	private void run(CommandOptions options, OutputReader outputReader, String... cmdAndParameters) 
+			throws IOException, InterruptedException {
+
+		run(options, List.of(processBuilder(options, cmdAndParameters)), null, outputReader, false);
+	}
+
+	/**
+	 * Executes one command or a pipeline of commands: starts the processes, writes the input, 
+	 * reads the output and the error outputs concurrently and waits for the exit of the processes.
+	 * 
+	 * @param options			the options of the execution
+	 * @param builders			the process builders, in pipeline order
+	 * @param inputWriter		the writer of the input of the first process, or null
+	 * @param outputReader		the reader of the output of the last process
+	 * @param pipefail			if true, the exit code is the one of the last process with a non-zero exit code, 
+	 * 							otherwise the one of the last process
+	 * @throws IOException in case of IO errors
+	 * @throws InterruptedException if the process has been interrupted
+	 */
+	private void run(CommandOptions options, List<ProcessBuilder> builders, InputWriter inputWriter, 
+			OutputReader outputReader, boolean pipefail) throws IOException, InterruptedException {
+
+		long startNanos = System.nanoTime();
+		List<Process> processes = builders.size() == 1 
+				? List.of(builders.get(0).start()) : ProcessBuilder.startPipeline(builders);
+		long spawnedNanos = recordSpawn(options, startNanos);
+		CompletableFuture<Boolean> finished = watchTimeout(processes, options);
+		List<CompletableFuture<Void>> pending = new ArrayList<>();
+		for (int i = 0; i < processes.size(); i++) {
+			CommandOptions.ErrorMode errorMode = options.getErrorMode();
+			if (errorMode == CommandOptions.ErrorMode.MERGED && i < processes.size() - 1) {
+				// only the last stage of a pipeline is merged, otherwise the next stage would read it
+				errorMode = CommandOptions.ErrorMode.SEPARATE;
+			}
+			pending.add(readErrors(processes.get(i), errorMode, options));
+		}
+		if (inputWriter != null) {
+			OutputStream in = processes.get(0).getOutputStream();
+			pending.add(CompletableFuture.runAsync(() -> {
+				try (in) {
+					inputWriter.write(in);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, executor(options)));
+		}
+		try {
+			outputReader.read(countBytes(processes.get(processes.size() - 1).getInputStream(), options, "command.outputBytes"));
+			int[] exitCodes = new int[processes.size()];
+			exitCodes[processes.size() - 1] = processes.get(processes.size() - 1).waitFor();
+			for (int i = 0; i < processes.size() - 1; i++) {
+				Process process = processes.get(i);
+				if (process.isAlive()) {
+					// the last stage has exited, but the JVM may still hold the read ends of the pipes 
+					// between the stages: a stage writing to a pipe would block forever instead of getting 
+					// a broken pipe (SIGPIPE), therefore it is terminated at once, like by SIGPIPE in a shell;
+					// by its handle, Process.destroy() would close the streams still read by other threads
+					process.toHandle().destroy();
+				}
+			}
+			for (int i = 0; i < processes.size() - 1; i++) {
+				exitCodes[i] = processes.get(i).waitFor();
+			}
+			for (int processExitCode : exitCodes) {
+				if (!pipefail || processExitCode != 0) {
+					exitCode = processExitCode;
+				}
+			}
+			recordExit(options, spawnedNanos, exitCode);
+			for (CompletableFuture<Void> future : pending) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) e.getCause()).getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			finished.complete(false);
+			for (Process process : processes) {
+				if (process.isAlive()) {
+					// interrupted or an exception has been thrown
+					killProcessTree(process, options.getKillGracePeriod());
+				}
+			}
 		}
-		output = sb.toString();
-		exitCode = process.waitFor();
 	}
 	
 	/**
@@ -91,23 +792,250 @@ public class CommandExecutor {
 		return exitCode;
 	}
 
+	/**
+	 * Returns the error output as an <code>ArrayList</code> of lines, without any newlines.
+	 * The list is empty if the error output has not been captured separately.
+	 * 
+	 * @return the error output lines as an array
+	 */
+	public ArrayList<String> getErrorLines() {
+		
+		return errorLines;
+	}
+
+	/**
+	 * Returns the error output (stderr).
+	 * The error output is empty if it has not been captured separately.
+	 * 
+	 * @return the error output
+	 */
+	public String getErrorOutput() {
+		
+		if (errorOutput == null) {
+			errorOutput = join(errorLines);
+		}
+		return errorOutput;
+	}
+
+	/**
+	 * Returns true if the process has been killed, because it did not finish before the timeout 
+	 * of the options elapsed. The exit code and the output are those of the killed process in this case.
+	 * 
+	 * @return true if the execution timed out
+	 */
+	public boolean isTimedOut() {
+		
+		return timedOut;
+	}
+
 	/**
 	 * Returns the output as an <code>ArrayList</code> of lines, without any newlines.
+	 * The lines are split at "\n", "\r" or "\r\n", like <code>BufferedReader.readLine()</code>.
+	 * The list is empty if the output has not been buffered (e.g. it has been streamed).
 	 * 
 	 * @return the output lines as an array
 	 */
 	public ArrayList<String> getLines() {
 		
+		if (lines == null) {
+			lines = split(getOutput());
+		}
 		return lines;
 	}
 
 	/**
-	 * Returns the output.
+	 * Returns the output, decoded by the charset of the options, with the line endings as 
+	 * written by the command. The output is empty if it has not been buffered (e.g. it has been streamed).
 	 * 
 	 * @return the output
 	 */
 	public String getOutput() {
 		
+		if (output == null) {
+			output = outputBuffer != null ? outputBuffer.toString(charset) : "";
+		}
 		return output;
 	}
+
+	/**
+	 * Returns the output as bytes, as written by the command (a copy of the internal buffer).
+	 * The array is empty if the output has not been buffered (e.g. it has been streamed).
+	 * 
+	 * @return the output bytes
+	 */
+	public byte[] getOutputBytes() {
+		
+		return outputBuffer != null ? outputBuffer.toByteArray() : new byte[0];
+	}
+
+	/**
+	 * Returns the number of bytes of the output.
+	 * The size is zero if the output has not been buffered (e.g. it has been streamed).
+	 * 
+	 * @return the size of the output in bytes
+	 */
+	public int getOutputSize() {
+		
+		return outputBuffer != null ? outputBuffer.size() : 0;
+	}
+
+	/**
+	 * Joins lines to a string, each line is terminated by a newline.
+	 * 
+	 * @param lines		the lines
+	 * @return the resulting string
+	 */
+	private static String join(List<String> lines) {
+
+		int length = 0;
+		for (String line : lines) {
+			length += line.length() + 1;
+		}
+		StringBuilder sb = new StringBuilder(length);
+		for (String line : lines) {
+			sb.append(line).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Splits a string into lines at "\n", "\r" or "\r\n", the line terminators are removed.
+	 * 
+	 * @param string		the string
+	 * @return the lines
+	 */
+	private static ArrayList<String> split(String string) {
+
+		ArrayList<String> lines = new ArrayList<>();
+		int start = 0;
+		int length = string.length();
+		for (int i = 0; i < length; i++) {
+			char c = string.charAt(i);
+			if (c == '\n' || c == '\r') {
+				lines.add(string.substring(start, i));
+				if (c == '\r' && i + 1 < length && string.charAt(i + 1) == '\n') {
+					i++;
+				}
+				start = i + 1;
+			}
+		}
+		if (start < length) {
+			lines.add(string.substring(start));
+		}
+		return lines;
+	}
+
+	/**
+	 * A writer of the input of a process.
+	 */
+	@FunctionalInterface
+	interface InputWriter {
+
+		/**
+		 * Writes the input of a process, the stream is closed afterwards by the caller.
+		 * A writer ignoring a broken pipe should close the stream itself, flushing on close fails as well.
+		 * 
+		 * @param out		the input stream of the process
+		 * @throws IOException in case of IO errors
+		 */
+		void write(OutputStream out) throws IOException;
+	}
+
+	/**
+	 * A reader of the output of a process.
+	 */
+	@FunctionalInterface
+	interface OutputReader {
+
+		/**
+		 * Reads the output of a process until the end.
+		 * 
+		 * @param in		the output stream of the process
+		 * @throws IOException in case of IO errors
+		 */
+		void read(InputStream in) throws IOException;
+	}
+
+	/**
+	 * A stream counting the bytes read from a process.
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+
+		/** the counter of the bytes */
+		private final Metrics.Counter counter;
+
+		/**
+		 * Construction of a counting stream.
+		 * 
+		 * @param in			the stream of the process
+		 * @param counter		the counter of the bytes
+		 */
+		private CountingInputStream(InputStream in, Metrics.Counter counter) {
+
+			super(in);
+			this.counter = counter;
+		}
+
+		@Override
+		public int read() throws IOException {
+
+			int b = in.read();
+			if (b >= 0) {
+				counter.increment();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+
+			int read = in.read(b, off, len);
+			if (read > 0) {
+				counter.add(read);
+			}
+			return read;
+		}
+	}
+
+	/**
+	 * A growable buffer of the output bytes of a process. The bytes are read directly
+	 * into the internal array and decoded without copying.
+	 */
+	private static class OutputBuffer extends ByteArrayOutputStream {
+
+		/**
+		 * Construction of an empty buffer.
+		 */
+		private OutputBuffer() {
+
+			super(8192);
+		}
+
+		/**
+		 * Reads a stream until its end directly into the buffer, the stream is closed.
+		 * 
+		 * @param in		the stream
+		 * @throws IOException in case of IO errors
+		 */
+		private synchronized void readFrom(InputStream in) throws IOException {
+
+			try (in) {
+				while (true) {
+					if (count == buf.length) {
+						// grow by doubling, limited by the maximum array size
+						int capacity = buf.length < Integer.MAX_VALUE / 2 ? buf.length * 2 : Integer.MAX_VALUE - 8;
+						if (capacity <= buf.length) {
+							throw new IOException("Output too large to be buffered: " + count + " bytes");
+						}
+						buf = Arrays.copyOf(buf, capacity);
+					}
+					int read = in.read(buf, count, buf.length - count);
+					if (read < 0) {
+						return;
+					}
+					count += read;
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,242 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil;
+
+import java.nio.charset.*;
+import java.time.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+import org.jutil.app.*;
+
+/**
+ * Options for the execution of a command by a {@link CommandExecutor}.<br/>
+ * The setters return the options object itself, so they can be chained:
+ * <pre>
+ * 		CommandOptions options = new CommandOptions()
+ * 				.errorMode(CommandOptions.ErrorMode.MERGED);
+ * 		CommandExecutor executor = new CommandExecutor(options, "bash", "-c", "make");
+ * </pre>
+ */
+public class CommandOptions {
+
+	/**
+	 * The handling of the error output (stderr) of a command. In any case the error output
+	 * is read concurrently to the output, a command never blocks on a full stderr pipe.
+	 */
+	public enum ErrorMode {
+		/** the error output is captured separately from the output (default) */
+		SEPARATE,
+		/** the error output is merged into the output */
+		MERGED,
+		/** the error output lines are passed to an error consumer, as soon as they are read (the consumer is required) */
+		STREAMED,
+		/** the error output is discarded */
+		DISCARD
+	};
+
+	/** the charset of the output and the error output */
+	private Charset charset = Charset.defaultCharset();
+	/** the handling of the error output */
+	private ErrorMode errorMode = ErrorMode.SEPARATE;
+	/** the consumer of the error lines in the case of <code>ErrorMode.STREAMED</code> */
+	private Consumer<String> errorConsumer;
+	/** the executor for asynchronous execution and reading the error output, or null for the default */
+	private Executor executor;
+	/** the maximum duration of the execution, or null for no timeout */
+	private Duration timeout;
+	/** the time between the graceful and the forced kill of a process tree */
+	private Duration killGracePeriod = Duration.ofSeconds(3);
+	/** the registry receiving the metrics of the execution, or null for none */
+	private Metrics metrics = Metrics.getDefault();
+
+	/**
+	 * Construction of options with default values.
+	 */
+	public CommandOptions() {
+
+	}
+
+	/**
+	 * Sets the charset used to decode the output and the error output of the command.
+	 *
+	 * @param charset		the charset, the default is the default charset of the JVM
+	 * @return this options object
+	 */
+	public CommandOptions charset(Charset charset) {
+
+		this.charset = charset;
+		return this;
+	}
+
+	/**
+	 * Sets the executor used for asynchronous execution and for reading the error output.
+	 *
+	 * @param executor		the executor, or null for the default (virtual threads if available)
+	 * @return this options object
+	 */
+	public CommandOptions executor(Executor executor) {
+
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * Passes the error output lines (without any newlines) to a consumer, as soon as they are read,
+	 * and sets the error mode to <code>ErrorMode.STREAMED</code>.<br/>
+	 * Note: the consumer is called from another thread than the one reading the output.
+	 *
+	 * @param errorConsumer		the consumer of the error output lines
+	 * @return this options object
+	 */
+	public CommandOptions errorConsumer(Consumer<String> errorConsumer) {
+
+		this.errorConsumer = errorConsumer;
+		errorMode = ErrorMode.STREAMED;
+		return this;
+	}
+
+	/**
+	 * Sets the handling of the error output (stderr).<br/>
+	 * <code>ErrorMode.STREAMED</code> requires an error consumer, otherwise the execution is rejected 
+	 * by an <code>IllegalStateException</code> before the process is started, see {@link #errorConsumer(Consumer)}.
+	 *
+	 * @param errorMode		the error mode
+	 * @return this options object
+	 */
+	public CommandOptions errorMode(ErrorMode errorMode) {
+
+		this.errorMode = errorMode;
+		return this;
+	}
+
+	/**
+	 * Sets the time to wait for processes to terminate after a graceful kill, before they are killed 
+	 * forcibly (e.g. SIGTERM, then SIGKILL on Unix-like systems). The default is 3 seconds.
+	 *
+	 * @param killGracePeriod		the grace period, zero to kill forcibly at once
+	 * @return this options object
+	 */
+	public CommandOptions killGracePeriod(Duration killGracePeriod) {
+
+		this.killGracePeriod = killGracePeriod;
+		return this;
+	}
+
+	/**
+	 * Sets the registry receiving the metrics of the execution, by default {@link Metrics#getDefault()}:
+	 * <pre>
+	 * 		command.spawn				histogram of the time to start the process (all processes of a pipeline)
+	 * 		command.run					histogram of the time from the start until the exit of the process
+	 * 		command.outputBytes			counter of the output bytes read
+	 * 		command.errorBytes			counter of the error output bytes read (if captured or streamed)
+	 * 		command.exitCode.&lt;code&gt;	counter of the exit codes, like "command.exitCode.0"
+	 * 		command.timeouts			counter of the executions killed due to a timeout
+	 * </pre>
+	 *
+	 * @param metrics		the registry, or null to record no metrics
+	 * @return this options object
+	 */
+	public CommandOptions metrics(Metrics metrics) {
+
+		this.metrics = metrics;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum duration of the execution. If the command has not finished in time,
+	 * the process and all its descendants are killed, see {@link CommandExecutor#isTimedOut()}.
+	 *
+	 * @param timeout		the timeout, or null for no timeout (default)
+	 * @return this options object
+	 */
+	public CommandOptions timeout(Duration timeout) {
+
+		this.timeout = timeout;
+		return this;
+	}
+
+	/**
+	 * Returns the charset used to decode the output and the error output of the command.
+	 *
+	 * @return the charset
+	 */
+	public Charset getCharset() {
+
+		return charset;
+	}
+
+	/**
+	 * Returns the consumer of the error lines in the case of <code>ErrorMode.STREAMED</code>.
+	 *
+	 * @return the error consumer or null
+	 */
+	public Consumer<String> getErrorConsumer() {
+
+		return errorConsumer;
+	}
+
+	/**
+	 * Returns the handling of the error output.
+	 *
+	 * @return the error mode
+	 */
+	public ErrorMode getErrorMode() {
+
+		return errorMode;
+	}
+
+	/**
+	 * Returns the executor used for asynchronous execution and for reading the error output.
+	 *
+	 * @return the executor, or null for the default
+	 */
+	public Executor getExecutor() {
+
+		return executor;
+	}
+
+	/**
+	 * Returns the time to wait for processes to terminate after a graceful kill.
+	 *
+	 * @return the grace period
+	 */
+	public Duration getKillGracePeriod() {
+
+		return killGracePeriod;
+	}
+
+	/**
+	 * Returns the registry receiving the metrics of the execution.
+	 *
+	 * @return the registry, or null for none
+	 */
+	public Metrics getMetrics() {
+
+		return metrics;
+	}
+
+	/**
+	 * Returns the maximum duration of the execution.
+	 *
+	 * @return the timeout, or null for no timeout
+	 */
+	public Duration getTimeout() {
+
+		return timeout;
+	}
+}
@@ -0,0 +1,295 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * A pipeline of commands (like <code>cmd1 | cmd2 | cmd3</code> of a shell), executed without a shell.<br/>
+ * The stages are connected directly by OS pipes using <code>ProcessBuilder.startPipeline()</code>,
+ * the data between the stages never passes the JVM. The input of the first stage can be a file,
+ * a byte array or an <code>InputStream</code>, the output of the last stage can be buffered,
+ * written to a file, copied to an <code>OutputStream</code> or passed to a line consumer.
+ * <pre>
+ * 		CommandExecutor executor = new CommandPipeline()
+ * 				.add("grep", "ERROR")
+ * 				.add("sort")
+ * 				.add("uniq", "-c")
+ * 				.input(Path.of("app.log"))
+ * 				.execute();
+ * 		System.out.println(executor.getOutput());
+ * 
+ * 		// directly into a file
+ * 		new CommandPipeline().add("pg_dump", "mydb").add("gzip").output(Path.of("dump.sql.gz")).execute();
+ * </pre>
+ * The exit code is the one of the last stage, or with <code>pipefail(true)</code> the one of the last
+ * stage with a non-zero exit code. The error output of all stages is handled as given by the options,
+ * <code>ErrorMode.MERGED</code> merges only the error output of the last stage into the output.<br/>
+ * Note: similar to a broken pipe of a shell, the stages still running after the last stage has exited
+ * (e.g. <code>yes</code> in <code>yes | head -3</code>) are terminated at once.
+ */
+public class CommandPipeline {
+
+	/** the commands of the stages */
+	private final List<String[]> stages = new ArrayList<>();
+	/** the options of the execution */
+	private CommandOptions options = new CommandOptions();
+	/** the input file of the first stage, or null */
+	private Path inputFile;
+	/** the input of the first stage as bytes, or null */
+	private byte[] inputBytes;
+	/** the input stream of the first stage, or null */
+	private InputStream inputStream;
+	/** the output file of the last stage, or null */
+	private Path outputFile;
+	/** true if the exit code is the one of the last failing stage */
+	private boolean pipefail;
+
+	/**
+	 * Construction of an empty pipeline.
+	 */
+	public CommandPipeline() {
+
+	}
+
+	/**
+	 * Adds a stage to the end of the pipeline.
+	 * 
+	 * @param cmdAndParameters		the command and its parameters
+	 * @return this pipeline
+	 */
+	public CommandPipeline add(String... cmdAndParameters) {
+
+		stages.add(cmdAndParameters);
+		return this;
+	}
+
+	/**
+	 * Executes the pipeline and buffers the output of the last stage in memory
+	 * (unless an output file has been set).
+	 * 
+	 * @return the executor containing the exit code, the output and the error output
+	 * @throws IOException in case of IO errors
+	 * @throws InterruptedException if the process has been interrupted
+	 * @throws IllegalStateException if the pipeline has no stages
+	 */
+	public CommandExecutor execute() throws IOException, InterruptedException, IllegalStateException {
+
+		return run(null);
+	}
+
+	/**
+	 * Executes the pipeline and passes each line of the output of the last stage (without any newlines)
+	 * to a consumer, as soon as it is read.
+	 * 
+	 * @param lineConsumer		the consumer of the output lines
+	 * @return the executor containing the exit code and the error output, but no output
+	 * @throws IOException in case of IO errors
+	 * @throws InterruptedException if the process has been interrupted
+	 * @throws IllegalStateException if the pipeline has no stages
+	 */
+	public CommandExecutor execute(Consumer<String> lineConsumer)
+			throws IOException, InterruptedException, IllegalStateException {
+
+		return run(in -> CommandExecutor.readLines(in, options.getCharset(), lineConsumer));
+	}
+
+	/**
+	 * Executes the pipeline and copies the output of the last stage as it is (bytes, in chunks)
+	 * to an <code>OutputStream</code>. The stream is not closed.
+	 * 
+	 * @param out		the stream receiving the output
+	 * @return the executor containing the exit code and the error output, but no output
+	 * @throws IOException in case of IO errors
+	 * @throws InterruptedException if the process has been interrupted
+	 * @throws IllegalStateException if the pipeline has no stages
+	 */
+	public CommandExecutor execute(OutputStream out) throws IOException, InterruptedException, IllegalStateException {
+
+		return run(in -> in.transferTo(out));
+	}
+
+	/**
+	 * Executes the pipeline.
+	 * 
+	 * @param outputReader		the reader of the output of the last stage, or null to buffer it
+	 * @return the executor
+	 * @throws IOException in case of IO errors
+	 * @throws InterruptedException if the process has been interrupted
+	 * @throws IllegalStateException if the pipeline has no stages
+	 */
+	private CommandExecutor run(CommandExecutor.OutputReader outputReader)
+			throws IOException, InterruptedException, IllegalStateException {
+
+		if (stages.isEmpty()) {
+			throw new IllegalStateException("The pipeline has no stages");
+		}
+		List<ProcessBuilder> builders = new ArrayList<>(stages.size());
+		for (String[] stage : stages) {
+			builders.add(CommandExecutor.processBuilder(options, stage));
+		}
+		// the last stage may merge its error output, the others must not write into the pipe
+		for (int i = 0; i < builders.size() - 1; i++) {
+			builders.get(i).redirectErrorStream(false);
+		}
+		CommandExecutor.InputWriter inputWriter = null;
+		if (inputFile != null) {
+			builders.get(0).redirectInput(inputFile.toFile());
+		} else if (inputBytes != null) {
+			inputWriter = out -> {
+				try {
+					out.write(inputBytes);
+				} catch (IOException e) {
+					// the first stage stopped reading its input (like head), this is not an error
+				}
+				closeInput(out);
+			};
+		} else if (inputStream != null) {
+			inputWriter = out -> transfer(inputStream, out);
+		} else {
+			// no input: the input of the first stage is closed
+			inputWriter = out -> {};
+		}
+		if (outputFile != null) {
+			builders.get(builders.size() - 1).redirectOutput(outputFile.toFile());
+		}
+		return CommandExecutor.executePipeline(options, builders, inputWriter, outputReader, pipefail);
+	}
+
+	/**
+	 * Sets a file as the input of the first stage, the file is read directly by the process.
+	 * 
+	 * @param file		the input file
+	 * @return this pipeline
+	 */
+	public CommandPipeline input(Path file) {
+
+		inputFile = file;
+		inputBytes = null;
+		inputStream = null;
+		return this;
+	}
+
+	/**
+	 * Sets bytes as the input of the first stage.
+	 * 
+	 * @param bytes		the input
+	 * @return this pipeline
+	 */
+	public CommandPipeline input(byte[] bytes) {
+
+		inputFile = null;
+		inputBytes = bytes;
+		inputStream = null;
+		return this;
+	}
+
+	/**
+	 * Sets a stream as the input of the first stage, it is copied to the process concurrently
+	 * to the execution. The stream is not closed.
+	 * 
+	 * @param in		the input stream
+	 * @return this pipeline
+	 */
+	public CommandPipeline input(InputStream in) {
+
+		inputFile = null;
+		inputBytes = null;
+		inputStream = in;
+		return this;
+	}
+
+	/**
+	 * Sets the options of the execution (error output, timeout, ...).
+	 * 
+	 * @param options		the options
+	 * @return this pipeline
+	 */
+	public CommandPipeline options(CommandOptions options) {
+
+		this.options = options;
+		return this;
+	}
+
+	/**
+	 * Sets a file as the output of the last stage, the file is written directly by the process.
+	 * 
+	 * @param file		the output file, created or truncated
+	 * @return this pipeline
+	 */
+	public CommandPipeline output(Path file) {
+
+		outputFile = file;
+		return this;
+	}
+
+	/**
+	 * If set, the exit code of the pipeline is the one of the last stage with a non-zero exit code
+	 * (like <code>set -o pipefail</code> of bash), otherwise it is the one of the last stage.
+	 * 
+	 * @param pipefail		true to report the last failing stage
+	 * @return this pipeline
+	 */
+	public CommandPipeline pipefail(boolean pipefail) {
+
+		this.pipefail = pipefail;
+		return this;
+	}
+
+	/**
+	 * Closes the input of the first stage, errors are ignored: flushing the buffered rest fails
+	 * if the first stage has exited without reading its input (like true), this is not an error.
+	 * 
+	 * @param out		the input of the first stage
+	 */
+	private static void closeInput(OutputStream out) {
+
+		try {
+			out.close();
+		} catch (IOException e) {
+			// broken pipe or stream closed, the first stage does not read anymore
+		}
+	}
+
+	/**
+	 * Copies an input stream to the input of the first stage and closes it. Read errors are thrown, write 
+	 * errors are ignored: the first stage stopped reading its input (like head), this is not an error.
+	 * 
+	 * @param in		the input stream
+	 * @param out		the input of the first stage
+	 * @throws IOException in case of read errors
+	 */
+	private static void transfer(InputStream in, OutputStream out) throws IOException {
+
+		byte[] buffer = new byte[8192];
+		int count;
+		try {
+			while ((count = in.read(buffer)) >= 0) {
+				try {
+					out.write(buffer, 0, count);
+				} catch (IOException e) {
+					return;
+				}
+			}
+		} finally {
+			closeInput(out);
+		}
+	}
+}
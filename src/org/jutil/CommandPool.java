@@ -0,0 +1,310 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * A pool executing many commands with a limited parallelism, e.g. to convert thousands of files
+ * without overloading the machine by process creation and memory.<br/>
+ * Commands waiting for execution are queued by priority (higher priorities first, equal priorities
+ * in submission order). Note: as long as fewer than <code>parallelism</code> pool threads exist, 
+ * a submitted command is started at once, therefore the priorities only order commands submitted 
+ * while the pool is saturated. The size of the queue is limited: if it is full, submitting blocks until
+ * a command has finished or a queued one has been cancelled (backpressure).
+ * <pre>
+ * 		try (CommandPool pool = new CommandPool(Runtime.getRuntime().availableProcessors())) {
+ * 			List&lt;String[]&gt; commands = new ArrayList&lt;&gt;();
+ * 			for (String file : files) {
+ * 				commands.add(new String[] {"convert", file, file + ".png"});
+ * 			}
+ * 			// in submission order:
+ * 			List&lt;CommandExecutor&gt; results = pool.executeAll(commands);
+ * 			// or in completion order:
+ * 			pool.executeAll(commands, executor -&gt; System.out.println(executor.getExitCode()));
+ * 		}
+ * </pre>
+ */
+public class CommandPool implements AutoCloseable {
+
+	/** the options used to execute the commands */
+	private final CommandOptions options;
+	/** the pool threads executing the commands */
+	private final ThreadPoolExecutor threadPool;
+	/** permits for queued and running commands, the backpressure of submissions */
+	private final Semaphore permits;
+	/** the sequence number of submissions, keeps the order of equal priorities */
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * Construction of a pool with a limited parallelism and a queue of four times the parallelism.
+	 * 
+	 * @param parallelism		the maximum number of commands executed at the same time
+	 */
+	public CommandPool(int parallelism) {
+
+		this(parallelism, 4 * parallelism, new CommandOptions());
+	}
+
+	/**
+	 * Construction of a pool with a limited parallelism and a limited queue.
+	 * 
+	 * @param parallelism		the maximum number of commands executed at the same time
+	 * @param queueCapacity		the maximum number of commands waiting for execution
+	 * @param options			the options used to execute the commands
+	 * @throws IllegalArgumentException if <code>parallelism</code> is less than one or
+	 * 		<code>queueCapacity</code> is negative
+	 */
+	public CommandPool(int parallelism, int queueCapacity, CommandOptions options) throws IllegalArgumentException {
+
+		if (parallelism < 1 || queueCapacity < 0) {
+			throw new IllegalArgumentException("Invalid parallelism " + parallelism
+					+ " or queue capacity " + queueCapacity);
+		}
+		this.options = options;
+		permits = new Semaphore(parallelism + queueCapacity);
+		AtomicInteger threadNumber = new AtomicInteger();
+		threadPool = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+				new PriorityBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, "CommandPool-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	/**
+	 * Shuts the pool down and waits until all submitted commands have finished.
+	 */
+	@Override
+	public void close() {
+
+		threadPool.shutdown();
+		boolean interrupted = false;
+		while (true) {
+			try {
+				if (threadPool.awaitTermination(1, TimeUnit.DAYS)) {
+					break;
+				}
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Executes commands and returns the results in submission order, after all commands have finished.
+	 * 
+	 * @param commands		the commands, each one consisting of the shell, options and the command to execute
+	 * @return the executors containing the exit code and the output, in the order of <code>commands</code>
+	 * @throws IOException in case of IO errors of any of the commands (the first one is thrown)
+	 * @throws InterruptedException if the current thread has been interrupted while waiting
+	 */
+	public List<CommandExecutor> executeAll(List<String[]> commands) throws IOException, InterruptedException {
+
+		List<CompletableFuture<CommandExecutor>> futures = new ArrayList<>(commands.size());
+		for (String[] command : commands) {
+			futures.add(submit(command));
+		}
+		List<CommandExecutor> results = new ArrayList<>(commands.size());
+		for (CompletableFuture<CommandExecutor> future : futures) {
+			results.add(get(future));
+		}
+		return results;
+	}
+
+	/**
+	 * Executes commands and passes the results to a consumer in completion order. The consumer
+	 * is called from the pool threads, but never concurrently. Returns after all commands have finished.
+	 * 
+	 * @param commands				the commands, each one consisting of the shell, options and the command to execute
+	 * @param resultConsumer		the consumer of the executors containing the exit code and the output
+	 * @throws IOException in case of IO errors of any of the commands (the first one is thrown)
+	 * @throws InterruptedException if the current thread has been interrupted while waiting
+	 */
+	public void executeAll(List<String[]> commands, Consumer<CommandExecutor> resultConsumer)
+			throws IOException, InterruptedException {
+
+		List<CompletableFuture<Void>> futures = new ArrayList<>(commands.size());
+		for (String[] command : commands) {
+			futures.add(submit(command).thenAccept(executor -> {
+				synchronized (resultConsumer) {
+					resultConsumer.accept(executor);
+				}
+			}));
+		}
+		for (CompletableFuture<Void> future : futures) {
+			get(future);
+		}
+	}
+
+	/**
+	 * Returns the number of commands waiting for execution.
+	 * 
+	 * @return the number of queued commands
+	 */
+	public int getQueuedCount() {
+
+		return threadPool.getQueue().size();
+	}
+
+	/**
+	 * Returns the number of commands currently executed.
+	 * 
+	 * @return the number of running commands
+	 */
+	public int getRunningCount() {
+
+		return threadPool.getActiveCount();
+	}
+
+	/**
+	 * Submits a command with the default priority (zero) for execution,
+	 * blocks while the queue of the pool is full.
+	 * 
+	 * @param cmdAndParameters		the shell, options and the command to execute
+	 * @return a future completing with the executor containing the exit code and the output,
+	 * 		or completing exceptionally in case of IO errors
+	 * @throws InterruptedException if the current thread has been interrupted while waiting
+	 */
+	public CompletableFuture<CommandExecutor> submit(String... cmdAndParameters) throws InterruptedException {
+
+		return submit(0, cmdAndParameters);
+	}
+
+	/**
+	 * Submits a command with a priority for execution, blocks while the queue of the pool is full.
+	 * Commands with higher priorities are executed first, once the pool is saturated (the first 
+	 * <code>parallelism</code> commands are started at once). Cancelling the returned future
+	 * before the command has been started removes it from the queue and releases its place.
+	 * 
+	 * @param priority				the priority of the command
+	 * @param cmdAndParameters		the shell, options and the command to execute
+	 * @return a future completing with the executor containing the exit code and the output,
+	 * 		or completing exceptionally in case of IO errors
+	 * @throws InterruptedException if the current thread has been interrupted while waiting
+	 * @throws RejectedExecutionException if the pool has been closed
+	 */
+	public CompletableFuture<CommandExecutor> submit(int priority, String... cmdAndParameters)
+			throws InterruptedException, RejectedExecutionException {
+
+		permits.acquire();
+		PoolTask task = new PoolTask(priority, sequence.getAndIncrement(), cmdAndParameters);
+		try {
+			threadPool.execute(task);
+		} catch (RejectedExecutionException e) {
+			permits.release();
+			throw e;
+		}
+		task.result.whenComplete((executor, throwable) -> {
+			if (task.result.isCancelled() && task.claimed.compareAndSet(false, true)) {
+				// not yet started: the permit is released now instead of when the task is dequeued
+				threadPool.remove(task);
+				permits.release();
+			}
+		});
+		return task.result;
+	}
+
+	/**
+	 * Waits for a future and unwraps an <code>IOException</code>.
+	 * 
+	 * @param <T>			the type of the result
+	 * @param future		the future
+	 * @return the result
+	 * @throws IOException in case of IO errors of the command
+	 * @throws InterruptedException if the current thread has been interrupted while waiting
+	 */
+	private static <T> T get(CompletableFuture<T> future) throws IOException, InterruptedException {
+
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * A queued command, ordered by priority and sequence.
+	 */
+	private class PoolTask implements Runnable, Comparable<PoolTask> {
+
+		/** the priority, higher priorities first */
+		private final int priority;
+		/** the sequence number, lower numbers first */
+		private final long sequenceNumber;
+		/** the command to execute */
+		private final String[] cmdAndParameters;
+		/** the result of the execution */
+		private final CompletableFuture<CommandExecutor> result = new CompletableFuture<>();
+		/** true after the task has been started or cancelled, the one claiming it releases the permit */
+		private final AtomicBoolean claimed = new AtomicBoolean();
+
+		/**
+		 * Construction of a task.
+		 * 
+		 * @param priority				the priority
+		 * @param sequenceNumber		the sequence number
+		 * @param cmdAndParameters		the shell, options and the command to execute
+		 */
+		private PoolTask(int priority, long sequenceNumber, String[] cmdAndParameters) {
+
+			this.priority = priority;
+			this.sequenceNumber = sequenceNumber;
+			this.cmdAndParameters = cmdAndParameters;
+		}
+
+		@Override
+		public int compareTo(PoolTask other) {
+
+			if (priority != other.priority) {
+				return priority > other.priority ? -1 : 1;
+			}
+			return Long.compare(sequenceNumber, other.sequenceNumber);
+		}
+
+		@Override
+		public void run() {
+
+			if (!claimed.compareAndSet(false, true)) {
+				// cancelled, the permit has been released
+				return;
+			}
+			try {
+				if (!result.isDone()) {
+					result.complete(new CommandExecutor(options, cmdAndParameters));
+				}
+			} catch (IOException | RuntimeException e) {
+				result.completeExceptionally(e);
+			} catch (InterruptedException e) {
+				result.completeExceptionally(e);
+				Thread.currentThread().interrupt();
+			} finally {
+				permits.release();
+			}
+		}
+	}
+}
@@ -16,10 +16,14 @@
  */
 package org.jutil;
 
+import java.io.*;
 import java.util.*;
 
 /**
- * Utilities for Enum.
+ * Utilities for Enum.<br/>
+ * The names and constants of an enumeration are computed once per class and cached, the methods
+ * are thread-safe and do not lock. Lookups by name (or ordinal) use a hash table and return null
+ * instead of throwing an exception for unknown names.
  * 
  * <pre>
  * Hints:
@@ -29,35 +33,76 @@ import java.util.*;
  *    to find an enum element by it's name:   XYZ element = XYZ.valueOf("A");
  *    
  *    or using:   XYZ element = Enum.valueOf(XYZ.class, "A");
+ *    
+ *    or without exception (null if unknown):   XYZ element = EnumUtil.findByName(XYZ.class, "A");
  * 
  * </pre>
+ * Sets of enumeration constants can be stored or sent compactly as bitmasks (bit <i>n</i> is set 
+ * if the constant with ordinal <i>n</i> is contained), as bytes or as a varint:
+ * <pre>
+ * 		EnumSet&lt;XYZ&gt; set = EnumUtil.parseEnumSet(XYZ.class, "A, C");
+ * 		long bitmask = EnumUtil.toBitmask(set);						// 0b101
+ * 		EnumSet&lt;XYZ&gt; copy = EnumUtil.fromBitmask(XYZ.class, bitmask);
+ * 		byte[] bytes = EnumUtil.toVarint(set);						// 1 byte
+ * </pre>
  */
 public class EnumUtil {
 
+	/** the cached metadata of enumerations */
+	private static final ClassValue<EnumInfo<?>> ENUM_INFOS = new ClassValue<>() {
+		@Override
+		protected EnumInfo<?> computeValue(Class<?> type) {
+
+			return new EnumInfo<>(type.getEnumConstants());
+		}
+	};
+
 	/**
 	 * Deny external construction.
 	 */
 	private EnumUtil() {
 		
 	}
-	
+
 	/**
-	 * Returns an array of names of an <code>enum</code>.
+	 * Returns the constants of an <code>enum</code> as an unmodifiable <code>List</code>, without copying.
+	 * 
+	 * @param <E>			the enumeration
+	 * @param enumClass		the class of the enumeration
+	 * @return the constants in the order of their ordinals
+	 */
+	public static <E extends Enum<E>> List<E> enumConstants(Class<E> enumClass) {
+
+		return info(enumClass).constantList;
+	}
+
+	/**
+	 * Returns the names of an <code>enum</code> as an unmodifiable <code>List</code>, without copying.
 	 * Note: due to the enumeration Javadoc the <code>toString()</code>
 	 * method is used to get the names.
 	 * 
 	 * @param <E>			the enumeration
 	 * @param enumClass		the class of the enumeration
+	 * @return the names in the order of the ordinals
+	 */
+	public static <E extends Enum<E>> List<String> enumNameList(Class<E> enumClass) {
+
+		return info(enumClass).nameList;
+	}
+
+	/**
+	 * Returns an array of names of an <code>enum</code>.
+	 * Note: due to the enumeration Javadoc the <code>toString()</code>
+	 * method is used to get the names. The array is a copy of the cached names, 
+	 * use {@link #enumNameList(Class)} to avoid copying.
+	 * 
+	 * @param <E>			the enumeration
+	 * @param enumClass		the class of the enumeration
 	 * @return an array of names of the elements of the  enumeration
 	 */
 	public static <E extends Enum<E>> String[] enumNames(Class<E> enumClass) {
 		
-		E[] elements = enumClass.getEnumConstants();
-		String[] names = new String[elements.length];
-		for (int i = 0; i < elements.length; i++) {
-			names[i] = elements[i].toString();			// javadoc enum hint: use toString()
-		}
-		return names;
+		return info(enumClass).names.clone();
 	}
 
 	/**
@@ -71,6 +116,554 @@ public class EnumUtil {
 	 */
 	public static <E extends Enum<E>> ArrayList<String> enumToNameList(Class<E> enumClass) {
 		
-		return new ArrayList<String>(Arrays.asList(enumNames(enumClass)));
+		return new ArrayList<String>(info(enumClass).nameList);
+	}
+
+	/**
+	 * Returns the constant of an <code>enum</code> with the given name (as of <code>toString()</code>),
+	 * or null if there is no such constant.
+	 * 
+	 * <pre>
+	 * Example:
+	 * 
+	 * 		Color color = EnumUtil.findByName(Color.class, "RED");
+	 * </pre>
+	 * 
+	 * @param <E>			the enumeration
+	 * @param enumClass		the class of the enumeration
+	 * @param name			the name, may be null
+	 * @return the constant or null
+	 */
+	public static <E extends Enum<E>> E findByName(Class<E> enumClass, CharSequence name) {
+
+		return name == null ? null : info(enumClass).find(name, 0, name.length(), false);
+	}
+
+	/**
+	 * Returns the constant of an <code>enum</code> with the name (as of <code>toString()</code>) given by
+	 * a region of a <code>CharSequence</code>, or null if there is no such constant. No substring is created,
+	 * e.g. to decode a protocol or to parse a list of names.
+	 * 
+	 * @param <E>			the enumeration
+	 * @param enumClass		the class of the enumeration
+	 * @param chars			the characters containing the name
+	 * @param start			the index of the first character of the name
+	 * @param end			the index after the last character of the name
+	 * @return the constant or null
+	 * @throws IndexOutOfBoundsException if the region is not within <code>chars</code>
+	 */
+	public static <E extends Enum<E>> E findByName(Class<E> enumClass, CharSequence chars, int start, int end)
+			throws IndexOutOfBoundsException {
+
+		Objects.checkFromToIndex(start, end, chars.length());
+		return info(enumClass).find(chars, start, end, false);
+	}
+
+	/**
+	 * Returns the constant of an <code>enum</code> with the given name (as of <code>toString()</code>),
+	 * ignoring the case like <code>String.equalsIgnoreCase()</code>, or null if there is no such constant.
+	 * If several names are equal ignoring the case, the one with the lowest ordinal is returned.
+	 * 
+	 * @param <E>			the enumeration
+	 * @param enumClass		the class of the enumeration
+	 * @param name			the name, may be null
+	 * @return the constant or null
+	 */
+	public static <E extends Enum<E>> E findByNameIgnoreCase(Class<E> enumClass, CharSequence name) {
+
+		return name == null ? null : info(enumClass).find(name, 0, name.length(), true);
+	}
+
+	/**
+	 * Returns the constant of an <code>enum</code> with the name (as of <code>toString()</code>) given by
+	 * a region of a <code>CharSequence</code>, ignoring the case, or null if there is no such constant.
+	 * 
+	 * @param <E>			the enumeration
+	 * @param enumClass		the class of the enumeration
+	 * @param chars			the characters containing the name
+	 * @param start			the index of the first character of the name
+	 * @param end			the index after the last character of the name
+	 * @return the constant or null
+	 * @throws IndexOutOfBoundsException if the region is not within <code>chars</code>
+	 */
+	public static <E extends Enum<E>> E findByNameIgnoreCase(Class<E> enumClass, CharSequence chars, 
+			int start, int end) throws IndexOutOfBoundsException {
+
+		Objects.checkFromToIndex(start, end, chars.length());
+		return info(enumClass).find(chars, start, end, true);
+	}
+
+	/**
+	 * Returns the constant of an <code>enum</code> with the given ordinal, or null if there is no such constant.
+	 * 
+	 * @param <E>			the enumeration
+	 * @param enumClass		the class of the enumeration
+	 * @param ordinal		the ordinal
+	 * @return the constant or null
+	 */
+	public static <E extends Enum<E>> E findByOrdinal(Class<E> enumClass, int ordinal) {
+
+		E[] constants = info(enumClass).constants;
+		return ordinal >= 0 && ordinal < constants.length ? constants[ordinal] : null;
+	}
+
+	/**
+	 * Returns the set of constants of an <code>enum</code> contained in a bitmask.
+	 * Bits without a constant are ignored (e.g. sent by a newer version of the enumeration).
+	 * 
+	 * @param <E>			the enumeration
+	 * @param enumClass		the class of the enumeration
+	 * @param bitmask		the bitmask, bit <i>n</i> represents the constant with ordinal <i>n</i>
+	 * @return the set of constants
+	 */
+	public static <E extends Enum<E>> EnumSet<E> fromBitmask(Class<E> enumClass, long bitmask) {
+
+		E[] constants = info(enumClass).constants;
+		EnumSet<E> set = EnumSet.noneOf(enumClass);
+		if (constants.length < Long.SIZE) {
+			bitmask &= (1L << constants.length) - 1;
+		}
+		while (bitmask != 0) {
+			set.add(constants[Long.numberOfTrailingZeros(bitmask)]);
+			bitmask &= bitmask - 1;				// clear the lowest bit
+		}
+		return set;
+	}
+
+	/**
+	 * Returns the set of constants of an <code>enum</code> contained in bitmasks of any length,
+	 * see {@link #toBitmasks(Class, Collection)}. Bits without a constant are ignored.
+	 * 
+	 * @param <E>			the enumeration
+	 * @param enumClass		the class of the enumeration
+	 * @param bitmasks		the bitmasks, bit <i>n</i> of element <i>i</i> represents the constant
+	 * 						with ordinal <i>64 * i + n</i>
+	 * @return the set of constants
+	 */
+	public static <E extends Enum<E>> EnumSet<E> fromBitmasks(Class<E> enumClass, long[] bitmasks) {
+
+		E[] constants = info(enumClass).constants;
+		EnumSet<E> set = EnumSet.noneOf(enumClass);
+		for (int i = 0; i < bitmasks.length; i++) {
+			long bitmask = bitmasks[i];
+			while (bitmask != 0) {
+				int ordinal = i * Long.SIZE + Long.numberOfTrailingZeros(bitmask);
+				if (ordinal >= constants.length) {
+					break;
+				}
+				set.add(constants[ordinal]);
+				bitmask &= bitmask - 1;
+			}
+		}
+		return set;
+	}
+
+	/**
+	 * Returns the set of constants of an <code>enum</code> contained in bytes, 
+	 * see {@link #toBytes(Class, Collection)}. Bits without a constant are ignored.
+	 * 
+	 * @param <E>			the enumeration
+	 * @param enumClass		the class of the enumeration
+	 * @param bytes			the bytes, bit <i>n</i> of byte <i>i</i> represents the constant
+	 * 						with ordinal <i>8 * i + n</i>
+	 * @return the set of constants
+	 */
+	public static <E extends Enum<E>> EnumSet<E> fromBytes(Class<E> enumClass, byte[] bytes) {
+
+		E[] constants = info(enumClass).constants;
+		EnumSet<E> set = EnumSet.noneOf(enumClass);
+		int length = Math.min(bytes.length, (constants.length + 7) / 8);
+		for (int i = 0; i < length; i++) {
+			int bits = bytes[i] & 0xFF;
+			while (bits != 0) {
+				int ordinal = i * 8 + Integer.numberOfTrailingZeros(bits);
+				if (ordinal >= constants.length) {
+					break;
+				}
+				set.add(constants[ordinal]);
+				bits &= bits - 1;
+			}
+		}
+		return set;
+	}
+
+	/**
+	 * Returns the set of constants of an <code>enum</code> contained in a varint,
+	 * see {@link #toVarint(Collection)}.
+	 * 
+	 * @param <E>			the enumeration
+	 * @param enumClass		the class of the enumeration
+	 * @param bytes			the bytes containing the varint
+	 * @param offset		the index of the first byte of the varint
+	 * @return the set of constants
+	 * @throws IllegalArgumentException if the bytes do not contain a valid varint at <code>offset</code>
+	 */
+	public static <E extends Enum<E>> EnumSet<E> fromVarint(Class<E> enumClass, byte[] bytes, int offset) 
+			throws IllegalArgumentException {
+
+		long bitmask = 0;
+		for (int shift = 0; shift < Long.SIZE; shift += 7) {
+			if (offset >= bytes.length) {
+				throw new IllegalArgumentException("Truncated varint");
+			}
+			byte b = bytes[offset++];
+			bitmask |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return fromBitmask(enumClass, bitmask);
+			}
+		}
+		throw new IllegalArgumentException("Varint longer than 10 bytes");
+	}
+
+	/**
+	 * Parses names (as of <code>toString()</code>) separated by commas into an <code>EnumSet</code>, 
+	 * without creating substrings. Whitespace around the names is ignored, empty names are skipped.
+	 * 
+	 * <pre>
+	 * Example:
+	 * 
+	 * 		EnumSet&lt;Color&gt; colors = EnumUtil.parseEnumSet(Color.class, "RED, GREEN");
+	 * </pre>
+	 * 
+	 * @param <E>			the enumeration
+	 * @param enumClass		the class of the enumeration
+	 * @param names			the names separated by commas
+	 * @return the set of constants
+	 * @throws IllegalArgumentException if a name is unknown
+	 */
+	public static <E extends Enum<E>> EnumSet<E> parseEnumSet(Class<E> enumClass, CharSequence names) 
+			throws IllegalArgumentException {
+
+		return parseEnumSet(enumClass, names, ',', false);
+	}
+
+	/**
+	 * Parses names (as of <code>toString()</code>) separated by a delimiter into an <code>EnumSet</code>, 
+	 * without creating substrings. Whitespace around the names is ignored, empty names are skipped.
+	 * 
+	 * @param <E>			the enumeration
+	 * @param enumClass		the class of the enumeration
+	 * @param names			the names separated by <code>delimiter</code>
+	 * @param delimiter		the delimiter, e.g. ',' or '|'
+	 * @param ignoreCase	true to ignore the case of the names
+	 * @return the set of constants
+	 * @throws IllegalArgumentException if a name is unknown
+	 */
+	public static <E extends Enum<E>> EnumSet<E> parseEnumSet(Class<E> enumClass, CharSequence names, 
+			char delimiter, boolean ignoreCase) throws IllegalArgumentException {
+
+		EnumInfo<E> info = info(enumClass);
+		EnumSet<E> set = EnumSet.noneOf(enumClass);
+		int length = names.length();
+		int start = 0;
+		while (start <= length) {
+			int end = start;
+			while (end < length && names.charAt(end) != delimiter) {
+				end++;
+			}
+			int next = end + 1;
+			while (start < end && Character.isWhitespace(names.charAt(start))) {
+				start++;
+			}
+			while (end > start && Character.isWhitespace(names.charAt(end - 1))) {
+				end--;
+			}
+			if (start < end) {
+				E constant = info.find(names, start, end, ignoreCase);
+				if (constant == null) {
+					throw new IllegalArgumentException("Unknown name of " + enumClass.getSimpleName() 
+							+ ": " + names.subSequence(start, end));
+				}
+				set.add(constant);
+			}
+			start = next;
+		}
+		return set;
+	}
+
+	/**
+	 * Reads a varint written by {@link #writeVarint(Collection, OutputStream)} and returns the set of constants.
+	 * 
+	 * @param <E>			the enumeration
+	 * @param enumClass		the class of the enumeration
+	 * @param in			the stream to read from
+	 * @return the set of constants
+	 * @throws IOException in case of IO errors, an <code>EOFException</code> at the end of the stream
+	 */
+	public static <E extends Enum<E>> EnumSet<E> readVarint(Class<E> enumClass, InputStream in) throws IOException {
+
+		long bitmask = 0;
+		for (int shift = 0; shift < Long.SIZE; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException("Truncated varint");
+			}
+			bitmask |= (long) (b & 0x7F) << shift;
+			if (b < 0x80) {
+				return fromBitmask(enumClass, bitmask);
+			}
+		}
+		throw new IOException("Varint longer than 10 bytes");
+	}
+
+	/**
+	 * Returns a bitmask of constants of an <code>enum</code> with at most 64 constants.
+	 * 
+	 * @param <E>			the enumeration
+	 * @param values		the constants, e.g. an <code>EnumSet</code>
+	 * @return the bitmask, bit <i>n</i> is set if the constant with ordinal <i>n</i> is contained
+	 * @throws IllegalArgumentException if an ordinal is 64 or higher, use {@link #toBitmasks(Class, Collection)}
+	 */
+	public static <E extends Enum<E>> long toBitmask(Collection<E> values) throws IllegalArgumentException {
+
+		long bitmask = 0;
+		for (E value : values) {
+			if (value.ordinal() >= Long.SIZE) {
+				throw new IllegalArgumentException("Ordinal too large for a bitmask: " + value.ordinal());
+			}
+			bitmask |= 1L << value.ordinal();
+		}
+		return bitmask;
+	}
+
+	/**
+	 * Returns bitmasks of constants of an <code>enum</code> with any number of constants.
+	 * 
+	 * @param <E>			the enumeration
+	 * @param enumClass		the class of the enumeration
+	 * @param values		the constants, e.g. an <code>EnumSet</code>
+	 * @return the bitmasks, one per 64 constants of the enumeration: bit <i>n</i> of element <i>i</i>
+	 * 		is set if the constant with ordinal <i>64 * i + n</i> is contained
+	 */
+	public static <E extends Enum<E>> long[] toBitmasks(Class<E> enumClass, Collection<E> values) {
+
+		long[] bitmasks = new long[(info(enumClass).constants.length + Long.SIZE - 1) / Long.SIZE];
+		for (E value : values) {
+			bitmasks[value.ordinal() / Long.SIZE] |= 1L << value.ordinal();		// the shift uses the lower 6 bits
+		}
+		return bitmasks;
+	}
+
+	/**
+	 * Returns constants of an <code>enum</code> as bytes, one bit per constant of the enumeration
+	 * (e.g. 2 bytes for an enumeration of 10 constants).
+	 * 
+	 * @param <E>			the enumeration
+	 * @param enumClass		the class of the enumeration
+	 * @param values		the constants, e.g. an <code>EnumSet</code>
+	 * @return the bytes: bit <i>n</i> of byte <i>i</i> is set if the constant 
+	 * 		with ordinal <i>8 * i + n</i> is contained
+	 */
+	public static <E extends Enum<E>> byte[] toBytes(Class<E> enumClass, Collection<E> values) {
+
+		byte[] bytes = new byte[(info(enumClass).constants.length + 7) / 8];
+		for (E value : values) {
+			bytes[value.ordinal() / 8] |= (byte) (1 << (value.ordinal() % 8));
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns constants of an <code>enum</code> with at most 64 constants as a varint (LEB128) of the bitmask,
+	 * 7 bits per byte: sets containing only constants with low ordinals need less bytes 
+	 * (e.g. one byte for the first 7 constants), at most 10 bytes.
+	 * 
+	 * @param <E>			the enumeration
+	 * @param values		the constants, e.g. an <code>EnumSet</code>
+	 * @return the bytes of the varint
+	 * @throws IllegalArgumentException if an ordinal is 64 or higher
+	 */
+	public static <E extends Enum<E>> byte[] toVarint(Collection<E> values) throws IllegalArgumentException {
+
+		long bitmask = toBitmask(values);
+		int bits = Long.SIZE - Long.numberOfLeadingZeros(bitmask);
+		byte[] bytes = new byte[Math.max(1, (bits + 6) / 7)];
+		for (int i = 0; i < bytes.length - 1; i++) {
+			bytes[i] = (byte) (bitmask & 0x7F | 0x80);
+			bitmask >>>= 7;
+		}
+		bytes[bytes.length - 1] = (byte) bitmask;
+		return bytes;
+	}
+
+	/**
+	 * Writes constants of an <code>enum</code> with at most 64 constants as a varint, 
+	 * see {@link #toVarint(Collection)}.
+	 * 
+	 * @param <E>			the enumeration
+	 * @param values		the constants, e.g. an <code>EnumSet</code>
+	 * @param out			the stream to write to
+	 * @throws IOException in case of IO errors
+	 * @throws IllegalArgumentException if an ordinal is 64 or higher
+	 */
+	public static <E extends Enum<E>> void writeVarint(Collection<E> values, OutputStream out) 
+			throws IOException, IllegalArgumentException {
+
+		out.write(toVarint(values));
+	}
+
+	/**
+	 * Returns the cached metadata of an enumeration.
+	 * 
+	 * @param <E>			the enumeration
+	 * @param enumClass		the class of the enumeration
+	 * @return the metadata
+	 * @throws IllegalArgumentException if the class is not an enumeration
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E extends Enum<E>> EnumInfo<E> info(Class<E> enumClass) throws IllegalArgumentException {
+
+		if (!enumClass.isEnum()) {
+			throw new IllegalArgumentException("Not an enum: " + enumClass.getName());
+		}
+		return (EnumInfo<E>) ENUM_INFOS.get(enumClass);
+	}
+
+	/**
+	 * The metadata of an enumeration, immutable after construction.
+	 * 
+	 * @param <E>			the enumeration
+	 */
+	private static class EnumInfo<E> {
+
+		/** the constants in the order of their ordinals */
+		private final E[] constants;
+		/** the names as of <code>toString()</code> */
+		private final String[] names;
+		/** the unmodifiable list of constants */
+		private final List<E> constantList;
+		/** the unmodifiable list of names */
+		private final List<String> nameList;
+		/** open addressing hash table of the names: the ordinal + 1, or 0 for an empty slot */
+		private final int[] table;
+		/** open addressing hash table of the case-folded names */
+		private final int[] tableIgnoreCase;
+
+		/**
+		 * Construction of the metadata of an enumeration.
+		 * 
+		 * @param constants		the constants of the enumeration
+		 */
+		private EnumInfo(E[] constants) {
+
+			this.constants = constants;
+			names = new String[constants.length];
+			for (int i = 0; i < constants.length; i++) {
+				names[i] = constants[i].toString();			// javadoc enum hint: use toString()
+			}
+			constantList = Collections.unmodifiableList(Arrays.asList(constants));
+			nameList = Collections.unmodifiableList(Arrays.asList(names));
+			// a load factor of at most 0.5 keeps the probe sequences short
+			int size = Integer.highestOneBit(Math.max(2, constants.length) * 2 - 1) << 1;
+			table = new int[size];
+			tableIgnoreCase = new int[size];
+			for (int i = 0; i < names.length; i++) {
+				if (names[i] == null) {
+					continue;
+				}
+				insert(table, i, false);
+				if (find(names[i], 0, names[i].length(), true) == null) {
+					insert(tableIgnoreCase, i, true);
+				}
+			}
+		}
+
+		/**
+		 * Returns the constant with the name given by a region of characters.
+		 * 
+		 * @param chars			the characters containing the name
+		 * @param start			the index of the first character of the name
+		 * @param end			the index after the last character of the name
+		 * @param ignoreCase	true to ignore the case
+		 * @return the constant or null
+		 */
+		private E find(CharSequence chars, int start, int end, boolean ignoreCase) {
+
+			int[] hashTable = ignoreCase ? tableIgnoreCase : table;
+			int mask = hashTable.length - 1;
+			for (int slot = hash(chars, start, end, ignoreCase) & mask; ; slot = (slot + 1) & mask) {
+				int entry = hashTable[slot];
+				if (entry == 0) {
+					return null;
+				}
+				if (matches(names[entry - 1], chars, start, end, ignoreCase)) {
+					return constants[entry - 1];
+				}
+			}
+		}
+
+		/**
+		 * Returns the hash code of a region of characters.
+		 * 
+		 * @param chars			the characters
+		 * @param start			the index of the first character
+		 * @param end			the index after the last character
+		 * @param ignoreCase	true to fold the case of the characters
+		 * @return the hash code
+		 */
+		private static int hash(CharSequence chars, int start, int end, boolean ignoreCase) {
+
+			int hash = 0;
+			for (int i = start; i < end; i++) {
+				char c = chars.charAt(i);
+				hash = 31 * hash + (ignoreCase ? foldCase(c) : c);
+			}
+			// spread the higher bits, the table uses the lower ones
+			return hash ^ (hash >>> 16);
+		}
+
+		/**
+		 * Inserts a name into a hash table.
+		 * 
+		 * @param hashTable		the hash table
+		 * @param ordinal		the ordinal of the constant
+		 * @param ignoreCase	true for the case-folded table
+		 */
+		private void insert(int[] hashTable, int ordinal, boolean ignoreCase) {
+
+			String name = names[ordinal];
+			int mask = hashTable.length - 1;
+			int slot = hash(name, 0, name.length(), ignoreCase) & mask;
+			while (hashTable[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			hashTable[slot] = ordinal + 1;
+		}
+
+		/**
+		 * Returns the case-folded character, like <code>String.equalsIgnoreCase()</code> compares.
+		 * 
+		 * @param c		the character
+		 * @return the folded character
+		 */
+		private static char foldCase(char c) {
+
+			return Character.toLowerCase(Character.toUpperCase(c));
+		}
+
+		/**
+		 * Returns true if a name equals a region of characters.
+		 * 
+		 * @param name			the name
+		 * @param chars			the characters
+		 * @param start			the index of the first character
+		 * @param end			the index after the last character
+		 * @param ignoreCase	true to ignore the case
+		 * @return true if equal
+		 */
+		private static boolean matches(String name, CharSequence chars, int start, int end, boolean ignoreCase) {
+
+			if (name.length() != end - start) {
+				return false;
+			}
+			for (int i = 0; i < name.length(); i++) {
+				char c1 = name.charAt(i);
+				char c2 = chars.charAt(start + i);
+				if (c1 != c2 && (!ignoreCase || foldCase(c1) != foldCase(c2))) {
+					return false;
+				}
+			}
+			return true;
+		}
 	}
 }
@@ -0,0 +1,466 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * A single-pass engine wrapping (long) text after given delimiter characters into lines.<br/>
+ * The text is read once, character by character, from a <code>CharSequence</code>, a <code>Reader</code>
+ * or an <code>Iterator</code> of chunks, and the lines are passed to a consumer, appended to an
+ * <code>Appendable</code> or returned as a lazy <code>Stream</code>. Only the current line is kept
+ * in memory, therefore large documents can be re-flowed with constant memory.<br/>
+ * The text is split into items: a sequence of non-delimiter characters together with the following
+ * delimiter (if <code>returnDelims</code> is true), or a sequence of non-delimiter characters only
+ * (otherwise). The items are collected to lines like <code>Strings.wrapByColumn()</code> and
+ * <code>Strings.wrapToList()</code> do, which are based on this class.
+ * <pre>
+ * Examples:
+ * 
+ * 		LineWrapper wrapper = new LineWrapper(" ", true, -80);	// at most 80 characters, if possible
+ * 		try (Reader reader = new FileReader("text.txt"); Writer writer = new FileWriter("wrapped.txt")) {
+ * 			wrapper.wrap(reader, writer, "\n");
+ * 		}
+ * 
+ * 		LineWrapper.byCount(",", true, 2).wrap("[1,2,33]", line -&gt; System.out.println(line));
+ * 		// prints:
+ * 		[1,2,
+ * 		33]
+ * </pre>
+ */
+public class LineWrapper {
+
+	/** the delimiter characters */
+	private final String delimiters;
+	/** true if the delimiters are contained in the lines */
+	private final boolean returnDelims;
+	/** the wrap column, see the constructor */
+	private final int wrapColumn;
+	/** the maximum number of items of a line, or zero if wrapping by column */
+	private final int count;
+	/** fast lookup of ASCII delimiters */
+	private final boolean[] asciiDelimiters = new boolean[128];
+
+	/**
+	 * Construction of a wrapper, wrapping by column.
+	 * 
+	 * @param delimiters		a string of one or more delimiting characters, similar
+	 * 							to <code>StringTokenizer</code>
+	 * @param returnDelims		if false, the delimiters are not contained in the resulting lines
+	 * @param wrapColumn		if zero, wrapping happens on each parsed delimiter. If negative,
+	 * 							wrapping happens always <i>before or at</i> wrapColumn is reached, but in
+	 * 							any case after at least after one delimiter. If positive, wrapping happens
+	 * 							<i>at or after</i> wrapColumn is reached.
+	 */
+	public LineWrapper(String delimiters, boolean returnDelims, int wrapColumn) {
+
+		this(delimiters, returnDelims, wrapColumn, 0);
+	}
+
+	/**
+	 * Construction of a wrapper.
+	 * 
+	 * @param delimiters		a string of one or more delimiting characters
+	 * @param returnDelims		if false, the delimiters are not contained in the resulting lines
+	 * @param wrapColumn		the wrap column, if <code>count</code> is zero
+	 * @param count				the maximum number of items of a line, or zero if wrapping by column
+	 */
+	private LineWrapper(String delimiters, boolean returnDelims, int wrapColumn, int count) {
+
+		this.delimiters = delimiters;
+		this.returnDelims = returnDelims;
+		this.wrapColumn = wrapColumn;
+		this.count = count;
+		for (int i = 0; i < delimiters.length(); i++) {
+			char c = delimiters.charAt(i);
+			if (c < 128) {
+				asciiDelimiters[c] = true;
+			}
+		}
+	}
+
+	/**
+	 * Returns a wrapper putting a maximum number of items into a line.
+	 * 
+	 * @param delimiters		a string of one or more delimiting characters
+	 * @param returnDelims		if false, the delimiters are not contained in the resulting lines
+	 * @param count				the maximum number of parsed items with delimiters of a line,
+	 * 							if less than one all items are put into one line
+	 * @return the wrapper
+	 */
+	public static LineWrapper byCount(String delimiters, boolean returnDelims, int count) {
+
+		return new LineWrapper(delimiters, returnDelims, 0, count < 1 ? Integer.MAX_VALUE : count);
+	}
+
+	/**
+	 * Returns true if the character is a delimiter.
+	 * 
+	 * @param c		the character
+	 * @return true if it is a delimiter
+	 */
+	private boolean isDelimiter(char c) {
+
+		return c < 128 ? asciiDelimiters[c] : delimiters.indexOf(c) >= 0;
+	}
+
+	/**
+	 * Returns the lines of a text as a lazily populated <code>Stream</code>.
+	 * 
+	 * @param text		the text to wrap
+	 * @return the stream of lines
+	 */
+	public Stream<String> lines(CharSequence text) {
+
+		return lines(new CharSequenceReader(text));
+	}
+
+	/**
+	 * Returns the lines of a text as a lazily populated <code>Stream</code>, the text is read
+	 * while the stream is consumed. The reader is not closed.
+	 * IO errors are thrown as <code>UncheckedIOException</code> by the stream operations.
+	 * 
+	 * @param reader		the reader of the text to wrap
+	 * @return the stream of lines
+	 */
+	public Stream<String> lines(Reader reader) {
+
+		ArrayDeque<String> pending = new ArrayDeque<>();
+		State state = new State(line -> pending.add(line.toString()));
+		char[] buffer = new char[8192];
+		Spliterator<String> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.NONNULL) {
+			/** true after the end of the text */
+			private boolean finished;
+
+			@Override
+			public boolean tryAdvance(Consumer<? super String> action) {
+
+				try {
+					while (pending.isEmpty() && !finished) {
+						int read = reader.read(buffer);
+						if (read < 0) {
+							state.finish();
+							finished = true;
+						} else {
+							for (int i = 0; i < read; i++) {
+								state.accept(buffer[i]);
+							}
+						}
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				if (pending.isEmpty()) {
+					return false;
+				}
+				action.accept(pending.poll());
+				return true;
+			}
+		};
+		return StreamSupport.stream(spliterator, false);
+	}
+
+	/**
+	 * Wraps a text and appends the lines to an <code>Appendable</code> (e.g. a <code>StringBuilder</code>
+	 * or a <code>Writer</code>), separated by a line separator, without any intermediate strings.
+	 * 
+	 * @param text				the text to wrap
+	 * @param out				the <code>Appendable</code> to append to
+	 * @param lineSeparator		the separator between lines, e.g. "\n"
+	 * @throws IOException in case of IO errors of the <code>Appendable</code>
+	 */
+	public void wrap(CharSequence text, Appendable out, CharSequence lineSeparator) throws IOException {
+
+		State state = new State(separatingSink(out, lineSeparator));
+		for (int i = 0; i < text.length(); i++) {
+			state.accept(text.charAt(i));
+		}
+		state.finish();
+	}
+
+	/**
+	 * Wraps a text and passes the lines to a consumer.
+	 * 
+	 * @param text				the text to wrap
+	 * @param lineConsumer		the consumer of the lines
+	 */
+	public void wrap(CharSequence text, Consumer<String> lineConsumer) {
+
+		State state = new State(line -> lineConsumer.accept(line.toString()));
+		try {
+			for (int i = 0; i < text.length(); i++) {
+				state.accept(text.charAt(i));
+			}
+			state.finish();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);		// never thrown by a consumer
+		}
+	}
+
+	/**
+	 * Wraps a text given as chunks (e.g. lines or blocks of a file) and passes the lines to a consumer.
+	 * Items may span chunks, a chunk boundary is not a delimiter.
+	 * 
+	 * @param chunks			the chunks of the text to wrap
+	 * @param lineConsumer		the consumer of the lines
+	 */
+	public void wrap(Iterator<? extends CharSequence> chunks, Consumer<String> lineConsumer) {
+
+		State state = new State(line -> lineConsumer.accept(line.toString()));
+		try {
+			while (chunks.hasNext()) {
+				CharSequence chunk = chunks.next();
+				for (int i = 0; i < chunk.length(); i++) {
+					state.accept(chunk.charAt(i));
+				}
+			}
+			state.finish();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);		// never thrown by a consumer
+		}
+	}
+
+	/**
+	 * Wraps a text read from a <code>Reader</code> and appends the lines to an <code>Appendable</code>
+	 * (e.g. a <code>Writer</code>), separated by a line separator. The reader is not closed.
+	 * 
+	 * @param reader			the reader of the text to wrap
+	 * @param out				the <code>Appendable</code> to append to
+	 * @param lineSeparator		the separator between lines, e.g. "\n"
+	 * @throws IOException in case of IO errors
+	 */
+	public void wrap(Reader reader, Appendable out, CharSequence lineSeparator) throws IOException {
+
+		wrap(reader, new State(separatingSink(out, lineSeparator)));
+	}
+
+	/**
+	 * Wraps a text read from a <code>Reader</code> and passes the lines to a consumer.
+	 * The reader is not closed.
+	 * 
+	 * @param reader			the reader of the text to wrap
+	 * @param lineConsumer		the consumer of the lines
+	 * @throws IOException in case of IO errors
+	 */
+	public void wrap(Reader reader, Consumer<String> lineConsumer) throws IOException {
+
+		wrap(reader, new State(line -> lineConsumer.accept(line.toString())));
+	}
+
+	/**
+	 * Wraps a text read from a <code>Reader</code> using a state.
+	 * 
+	 * @param reader		the reader of the text to wrap
+	 * @param state			the state
+	 * @throws IOException in case of IO errors
+	 */
+	private void wrap(Reader reader, State state) throws IOException {
+
+		char[] buffer = new char[8192];
+		int read;
+		while ((read = reader.read(buffer)) >= 0) {
+			for (int i = 0; i < read; i++) {
+				state.accept(buffer[i]);
+			}
+		}
+		state.finish();
+	}
+
+	/**
+	 * Returns a sink appending lines separated by a line separator.
+	 * 
+	 * @param out				the <code>Appendable</code> to append to
+	 * @param lineSeparator		the separator between lines
+	 * @return the sink
+	 */
+	private static Sink separatingSink(Appendable out, CharSequence lineSeparator) {
+
+		boolean[] first = {true};
+		return line -> {
+			if (!first[0]) {
+				out.append(lineSeparator);
+			}
+			first[0] = false;
+			out.append(line);
+		};
+	}
+
+	/**
+	 * The receiver of the wrapped lines.
+	 */
+	@FunctionalInterface
+	private interface Sink {
+
+		/**
+		 * Receives a line, the <code>StringBuilder</code> is reused afterwards.
+		 * 
+		 * @param line		the line
+		 * @throws IOException in case of IO errors
+		 */
+		void line(StringBuilder line) throws IOException;
+	}
+
+	/**
+	 * The state of a single wrapping pass.
+	 */
+	private class State {
+
+		/** the receiver of the lines */
+		private final Sink sink;
+		/** the current item */
+		private final StringBuilder item = new StringBuilder();
+		/** the current line */
+		private final StringBuilder line = new StringBuilder();
+		/** the number of items of the current line */
+		private int itemCount;
+		/** true if the line has to be wrapped before the next item */
+		private boolean wrapPending;
+
+		/**
+		 * Construction of a state.
+		 * 
+		 * @param sink		the receiver of the lines
+		 */
+		private State(Sink sink) {
+
+			this.sink = sink;
+		}
+
+		/**
+		 * Accepts the next character of the text.
+		 * 
+		 * @param c		the character
+		 * @throws IOException in case of IO errors of the sink
+		 */
+		private void accept(char c) throws IOException {
+
+			if (!isDelimiter(c)) {
+				item.append(c);
+			} else if (returnDelims) {
+				item.append(c);
+				endItem();
+			} else if (item.length() > 0) {
+				endItem();
+			}
+		}
+
+		/**
+		 * Emits the current line.
+		 * 
+		 * @throws IOException in case of IO errors of the sink
+		 */
+		private void emit() throws IOException {
+
+			sink.line(line);
+			line.setLength(0);
+			itemCount = 0;
+			wrapPending = false;
+		}
+
+		/**
+		 * Adds the current item to the line, emits a line if necessary.
+		 * 
+		 * @throws IOException in case of IO errors of the sink
+		 */
+		private void endItem() throws IOException {
+
+			if (count > 0) {
+				line.append(item);
+				if (++itemCount == count) {
+					emit();
+				}
+			} else if (wrapColumn == 0) {
+				line.append(item);
+				emit();
+			} else if (wrapColumn > 0) {
+				// wrap at or after the column, but not after the last item
+				if (wrapPending) {
+					emit();
+				}
+				line.append(item);
+				wrapPending = line.length() >= wrapColumn;
+			} else {
+				// wrap before or at the column
+				if (line.length() > 0 && line.length() + item.length() > -wrapColumn) {
+					emit();
+				}
+				line.append(item);
+			}
+			item.setLength(0);
+		}
+
+		/**
+		 * Finishes the pass at the end of the text, emits the last line.
+		 * 
+		 * @throws IOException in case of IO errors of the sink
+		 */
+		private void finish() throws IOException {
+
+			if (item.length() > 0) {
+				endItem();
+			}
+			if (line.length() > 0) {
+				emit();
+			}
+		}
+	}
+
+	/**
+	 * A minimal <code>Reader</code> of a <code>CharSequence</code>.
+	 */
+	private static class CharSequenceReader extends Reader {
+
+		/** the text */
+		private final CharSequence text;
+		/** the position of the next character */
+		private int position;
+
+		/**
+		 * Construction of a reader.
+		 * 
+		 * @param text		the text
+		 */
+		private CharSequenceReader(CharSequence text) {
+
+			this.text = text;
+		}
+
+		@Override
+		public void close() {
+
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) {
+
+			if (position >= text.length()) {
+				return -1;
+			}
+			int end = Math.min(text.length(), position + length);
+			for (int i = position; i < end; i++) {
+				buffer[offset++] = text.charAt(i);
+			}
+			int read = end - position;
+			position = end;
+			return read;
+		}
+	}
+}
@@ -0,0 +1,137 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil;
+
+import java.time.*;
+
+/**
+ * Paces a loop at a fixed rate: {@link #await()} waits until the next tick, the ticks are
+ * computed from the start time, so the processing time of an iteration does not add up to a drift.
+ * If an iteration takes longer than the period, the next ticks are due at once to catch up,
+ * but at most <code>maxCatchUp</code> ticks, the others are skipped (counted as overruns).<br/>
+ * Waiting parks the thread with a nanosecond resolution (suitable for virtual threads), for
+ * periods below a millisecond a spin time before each tick can be given, see 
+ * {@link Util#sleepUntil(long, long)}. Not thread-safe, a pacer is used by one thread.
+ * <pre>
+ * Example:
+ * 
+ * 		Pacer pacer = new Pacer(Duration.ofMillis(20));		// 50 times a second
+ * 		while (running) {
+ * 			pacer.await();
+ * 			updateAndRender();
+ * 		}
+ * </pre>
+ */
+public class Pacer {
+
+	/** the period in nanoseconds */
+	private final long periodNanos;
+	/** the nanoseconds to busy-wait before a tick */
+	private final long spinNanos;
+	/** the maximum number of ticks due at once after an overrun */
+	private final int maxCatchUp;
+	/** the next tick as of <code>System.nanoTime()</code> */
+	private long nextTick;
+	/** the number of ticks since the start */
+	private long tickCount;
+	/** the number of skipped ticks */
+	private long overruns;
+
+	/**
+	 * Construction of a pacer without spinning, catching up at most one tick.
+	 * 
+	 * @param period		the time between two ticks
+	 * @throws IllegalArgumentException if the period is not positive
+	 */
+	public Pacer(Duration period) throws IllegalArgumentException {
+
+		this(period, Duration.ZERO, 1);
+	}
+
+	/**
+	 * Construction of a pacer, the first tick is due one period after construction.
+	 * 
+	 * @param period		the time between two ticks
+	 * @param spinTime		the time to busy-wait before each tick for a higher precision, 
+	 * 						zero to park only
+	 * @param maxCatchUp	the maximum number of ticks due at once after an iteration took longer than
+	 * 						the period, zero to skip all missed ticks
+	 * @throws IllegalArgumentException if the period is not positive or an argument is negative
+	 */
+	public Pacer(Duration period, Duration spinTime, int maxCatchUp) throws IllegalArgumentException {
+
+		if (period.isNegative() || period.isZero() || spinTime.isNegative() || maxCatchUp < 0) {
+			throw new IllegalArgumentException("Invalid period " + period + ", spin time " + spinTime 
+					+ " or catch up " + maxCatchUp);
+		}
+		periodNanos = period.toNanos();
+		spinNanos = spinTime.toNanos();
+		this.maxCatchUp = maxCatchUp;
+		reset();
+	}
+
+	/**
+	 * Waits until the next tick.
+	 * 
+	 * @throws InterruptedException if the thread has been interrupted while waiting
+	 */
+	public void await() throws InterruptedException {
+
+		long now = System.nanoTime();
+		long late = now - nextTick;
+		if (late > (long) maxCatchUp * periodNanos) {
+			// too late: skip the missed ticks except maxCatchUp ones
+			long skipped = late / periodNanos - maxCatchUp;
+			overruns += skipped;
+			tickCount += skipped;
+			nextTick += skipped * periodNanos;
+		}
+		Util.sleepUntil(nextTick, spinNanos);
+		nextTick += periodNanos;
+		tickCount++;
+	}
+
+	/**
+	 * Returns the number of skipped ticks, because iterations took longer than the period.
+	 * 
+	 * @return the number of overruns
+	 */
+	public long getOverruns() {
+
+		return overruns;
+	}
+
+	/**
+	 * Returns the number of ticks since the start, including skipped ones.
+	 * 
+	 * @return the number of ticks
+	 */
+	public long getTickCount() {
+
+		return tickCount;
+	}
+
+	/**
+	 * Restarts the pacer, the next tick is due one period from now.
+	 */
+	public void reset() {
+
+		nextTick = System.nanoTime() + periodNanos;
+		tickCount = 0;
+		overruns = 0;
+	}
+}
@@ -0,0 +1,152 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A thread-safe token bucket rate limiter: permits are added at a fixed rate, up to a burst size.
+ * {@link #acquire()} waits until a permit is available, {@link #tryAcquire()} returns at once.<br/>
+ * The limiter is lock-free (a single atomic "theoretical arrival time"), waiting threads are parked
+ * and never hold a lock, therefore it is suitable for many (virtual) threads.
+ * <pre>
+ * Example:
+ * 
+ * 		RateLimiter limiter = new RateLimiter(100, 10);		// 100 requests per second, bursts of 10
+ * 		for (Request request : requests) {
+ * 			limiter.acquire();
+ * 			send(request);
+ * 		}
+ * </pre>
+ */
+public class RateLimiter {
+
+	/** the nanoseconds per permit */
+	private final long intervalNanos;
+	/** the nanoseconds a burst may be ahead of the rate */
+	private final long burstNanos;
+	/** the time as of <code>System.nanoTime()</code> when the bucket is full again */
+	private final AtomicLong fullAt;
+
+	/**
+	 * Construction of a rate limiter, the bucket is full.
+	 * 
+	 * @param permitsPerSecond		the rate of the permits
+	 * @param burst					the size of the bucket, the maximum number of permits acquired at once
+	 * 								without waiting
+	 * @throws IllegalArgumentException if the rate is not positive or the burst is less than one
+	 */
+	public RateLimiter(double permitsPerSecond, long burst) throws IllegalArgumentException {
+
+		if (!(permitsPerSecond > 0) || burst < 1) {
+			throw new IllegalArgumentException("Invalid rate " + permitsPerSecond + " or burst " + burst);
+		}
+		intervalNanos = Math.max(1, (long) (1_000_000_000 / permitsPerSecond));
+		burstNanos = intervalNanos * burst;
+		fullAt = new AtomicLong(System.nanoTime());
+	}
+
+	/**
+	 * Acquires a permit, waits until it is available.
+	 * 
+	 * @throws InterruptedException if the thread has been interrupted while waiting
+	 * 		(the permit is consumed nevertheless)
+	 */
+	public void acquire() throws InterruptedException {
+
+		acquire(1);
+	}
+
+	/**
+	 * Acquires permits, waits until they are available.
+	 * 
+	 * @param permits		the number of permits
+	 * @throws InterruptedException if the thread has been interrupted while waiting
+	 * 		(the permits are consumed nevertheless)
+	 */
+	public void acquire(long permits) throws InterruptedException {
+
+		Util.sleepUntil(reserve(permits, Long.MAX_VALUE).getAsLong(), 0);
+	}
+
+	/**
+	 * Reserves permits if they are available within a maximum waiting time.
+	 * 
+	 * @param permits			the number of permits
+	 * @param maxWaitNanos		the maximum nanoseconds to wait for the permits
+	 * @return the deadline as of <code>System.nanoTime()</code> to wait for, if reserved
+	 */
+	private OptionalLong reserve(long permits, long maxWaitNanos) {
+
+		while (true) {
+			long now = System.nanoTime();
+			long current = fullAt.get();
+			// a bucket that has been full for a long time is not fuller than full
+			long next = (current - now > 0 ? current : now) + permits * intervalNanos;
+			// the permits are available as soon as the bucket is not over-full
+			long availableAt = next - burstNanos;
+			if (availableAt - now > maxWaitNanos) {
+				return OptionalLong.empty();
+			}
+			if (fullAt.compareAndSet(current, next)) {
+				return OptionalLong.of(availableAt);
+			}
+		}
+	}
+
+	/**
+	 * Acquires a permit if it is available at once.
+	 * 
+	 * @return true if acquired
+	 */
+	public boolean tryAcquire() {
+
+		return tryAcquire(1);
+	}
+
+	/**
+	 * Acquires permits if they are available at once.
+	 * 
+	 * @param permits		the number of permits
+	 * @return true if acquired
+	 */
+	public boolean tryAcquire(long permits) {
+
+		return reserve(permits, 0).isPresent();
+	}
+
+	/**
+	 * Acquires permits if they are available within a timeout, waits for them.
+	 * 
+	 * @param permits		the number of permits
+	 * @param timeout		the maximum time to wait
+	 * @return true if acquired, false at once if they are not available within the timeout
+	 * @throws InterruptedException if the thread has been interrupted while waiting
+	 * 		(the permits are consumed nevertheless)
+	 */
+	public boolean tryAcquire(long permits, Duration timeout) throws InterruptedException {
+
+		OptionalLong availableAt = reserve(permits, timeout.toNanos());
+		if (availableAt.isEmpty()) {
+			return false;
+		}
+		Util.sleepUntil(availableAt.getAsLong(), 0);
+		return true;
+	}
+}
@@ -16,6 +16,7 @@
  */
 package org.jutil;
 
+import java.io.*;
 import java.util.*;
 
 /**
@@ -59,21 +60,49 @@ public class Strings {
      */
     public static String center(String leftBorder, String string, String rightBorder, int length) {
     	
-    	leftBorder = leftBorder == null ? "" : leftBorder;
-       	rightBorder = rightBorder == null ? "" : leftBorder;
-       	string = string == null ? "" : string;
-    	StringBuilder sb = new StringBuilder(leftBorder);
-    	// if odd, the right side is on blank longer then the left side
-    	int half = (length - string.length()) / 2;	
-    	for (int i = leftBorder.length(); i < half; i++) {
-			sb.append(" ");
-		}
-		sb.append(string);
-    	for (int i = half + string.length(); i < length - rightBorder.length(); i++) {
-			sb.append(" ");
-		}
-		sb.append(rightBorder);
-    	return sb.toString();
+    	return center(new StringBuilder(Math.max(length, 16)), leftBorder, string, rightBorder, length).toString();
+    }
+
+    /**
+     * Appends a centered string with borders to the left and right (if any) to a <code>StringBuilder</code>,
+     * without any intermediate strings, see {@link #center(String, String, String, int)}.
+     * 
+     * @param sb				the <code>StringBuilder</code> to append to
+     * @param leftBorder		the left side border, may be null
+     * @param string			the string to be centered, may be null
+     * @param rightBorder		the right side border, may be null
+     * @param length			the length of the appended characters
+     * @return the <code>StringBuilder</code>
+     */
+    public static StringBuilder center(StringBuilder sb, CharSequence leftBorder, CharSequence string, 
+    		CharSequence rightBorder, int length) {
+    	
+    	try {
+    		appendCenter(sb, leftBorder, string, rightBorder, length);
+    	} catch (IOException e) {
+    		throw new UncheckedIOException(e);		// never thrown by a StringBuilder
+    	}
+    	return sb;
+    }
+
+    /**
+     * Appends a centered string with borders to the left and right (if any) to an <code>Appendable</code>
+     * (e.g. a <code>Writer</code>), without any intermediate strings, see {@link #center(String, String, String, int)}.
+     * 
+     * @param <A>				the type of the <code>Appendable</code>
+     * @param appendable		the <code>Appendable</code> to append to
+     * @param leftBorder		the left side border, may be null
+     * @param string			the string to be centered, may be null
+     * @param rightBorder		the right side border, may be null
+     * @param length			the length of the appended characters
+     * @return the <code>Appendable</code>
+     * @throws IOException in case of IO errors of the <code>Appendable</code>
+     */
+    public static <A extends Appendable> A center(A appendable, CharSequence leftBorder, CharSequence string, 
+    		CharSequence rightBorder, int length) throws IOException {
+    	
+    	appendCenter(appendable, leftBorder, string, rightBorder, length);
+    	return appendable;
     }
 
     /**
@@ -99,14 +128,59 @@ public class Strings {
     public static String fillLeft(String origin, int maxLength, String filler) throws IllegalArgumentException {
     	
     	String s = origin != null ? origin : "";
-    	int length = s.length();
-    	if (length >= maxLength) {
+    	if (s.length() >= maxLength) {
 			return s;
 		}
-    	if (filler == null || filler.length() == 0) {
-			throw new IllegalArgumentException("Filler cannot be null or empty");
-		}
-    	return fillRight(null, maxLength - s.length(), filler) + s;
+    	return fillLeft(new StringBuilder(maxLength), s, maxLength, filler).toString();
+    }
+
+    /**
+     * Appends a string filled on its left side until a maximum length is reached to a <code>StringBuilder</code>,
+     * without any intermediate strings, see {@link #fillLeft(String, int, String)}.
+     * <pre>
+     * Example:
+     * 
+     * 		StringBuilder row = new StringBuilder();
+     * 		Strings.fillLeft(row, name, 20, " ").append(" | ");
+     * 		Strings.fillLeft(row, Integer.toString(count), 8, " ");
+     * </pre>
+     * 
+     * @param sb				the <code>StringBuilder</code> to append to
+     * @param origin			the origin, may be null or empty
+     * @param maxLength			the number of characters to append
+     * @param filler			the characters to fill in (may also be " " to fill with spaces)
+     * @return the <code>StringBuilder</code>
+     * @throws IllegalArgumentException if <code>filler</code> is <code>null</code> or empty ("")
+     */
+    public static StringBuilder fillLeft(StringBuilder sb, CharSequence origin, int maxLength, CharSequence filler) 
+    		throws IllegalArgumentException {
+    	
+    	try {
+    		appendFillLeft(sb, origin, maxLength, filler);
+    	} catch (IOException e) {
+    		throw new UncheckedIOException(e);		// never thrown by a StringBuilder
+    	}
+    	return sb;
+    }
+
+    /**
+     * Appends a string filled on its left side until a maximum length is reached to an <code>Appendable</code>
+     * (e.g. a <code>Writer</code>), without any intermediate strings, see {@link #fillLeft(String, int, String)}.
+     * 
+     * @param <A>				the type of the <code>Appendable</code>
+     * @param appendable		the <code>Appendable</code> to append to
+     * @param origin			the origin, may be null or empty
+     * @param maxLength			the number of characters to append
+     * @param filler			the characters to fill in (may also be " " to fill with spaces)
+     * @return the <code>Appendable</code>
+     * @throws IOException in case of IO errors of the <code>Appendable</code>
+     * @throws IllegalArgumentException if <code>filler</code> is <code>null</code> or empty ("")
+     */
+    public static <A extends Appendable> A fillLeft(A appendable, CharSequence origin, int maxLength, 
+    		CharSequence filler) throws IOException, IllegalArgumentException {
+    	
+    	appendFillLeft(appendable, origin, maxLength, filler);
+    	return appendable;
     }
 
     /**
@@ -132,23 +206,52 @@ public class Strings {
     public static String fillRight(String origin, int maxLength, String filler) throws IllegalArgumentException {
     	
     	String s = origin != null ? origin : "";
-    	int length = s.length();
-    	if (length >= maxLength) {
+    	if (s.length() >= maxLength) {
 			return s;
 		}
-    	if (filler == null || filler.length() == 0) {
-			throw new IllegalArgumentException("Filler cannot be null or empty");
-		}
-    	StringBuilder sb = new StringBuilder(s);
-    	int fillerIndex = 0;
-    	int fillerLength = filler.length();
-    	for (int i = length; i < maxLength; i++) {
-			sb.append(filler.charAt(fillerIndex++));
-			if (fillerIndex >= fillerLength) {
-				fillerIndex = 0;
-			}
-		}
-    	return sb.toString();
+    	return fillRight(new StringBuilder(maxLength), s, maxLength, filler).toString();
+    }
+
+    /**
+     * Appends a string filled on its right side until a maximum length is reached to a <code>StringBuilder</code>,
+     * without any intermediate strings, see {@link #fillRight(String, int, String)}.
+     * 
+     * @param sb				the <code>StringBuilder</code> to append to
+     * @param origin			the origin, may be null or empty
+     * @param maxLength			the number of characters to append
+     * @param filler			the characters to fill in (may also be " " to fill with spaces)
+     * @return the <code>StringBuilder</code>
+     * @throws IllegalArgumentException if <code>filler</code> is <code>null</code> or empty ("")
+     */
+    public static StringBuilder fillRight(StringBuilder sb, CharSequence origin, int maxLength, CharSequence filler) 
+    		throws IllegalArgumentException {
+    	
+    	try {
+    		appendFillRight(sb, origin, maxLength, filler);
+    	} catch (IOException e) {
+    		throw new UncheckedIOException(e);		// never thrown by a StringBuilder
+    	}
+    	return sb;
+    }
+
+    /**
+     * Appends a string filled on its right side until a maximum length is reached to an <code>Appendable</code>
+     * (e.g. a <code>Writer</code>), without any intermediate strings, see {@link #fillRight(String, int, String)}.
+     * 
+     * @param <A>				the type of the <code>Appendable</code>
+     * @param appendable		the <code>Appendable</code> to append to
+     * @param origin			the origin, may be null or empty
+     * @param maxLength			the number of characters to append
+     * @param filler			the characters to fill in (may also be " " to fill with spaces)
+     * @return the <code>Appendable</code>
+     * @throws IOException in case of IO errors of the <code>Appendable</code>
+     * @throws IllegalArgumentException if <code>filler</code> is <code>null</code> or empty ("")
+     */
+    public static <A extends Appendable> A fillRight(A appendable, CharSequence origin, int maxLength, 
+    		CharSequence filler) throws IOException, IllegalArgumentException {
+    	
+    	appendFillRight(appendable, origin, maxLength, filler);
+    	return appendable;
     }
 	
     /**
@@ -167,12 +270,47 @@ public class Strings {
     	if (indentation == null || indentLevel < 1) {
 			return string;
 		}
-      	StringBuilder sb = new StringBuilder();
-      	for (int i = 0; i < indentLevel; i++) {
-			sb.append(indentation);
-		}
-      	sb.append(string);
-    	return sb.toString();
+    	int length = indentation.length() * indentLevel + (string != null ? string.length() : 4);
+      	return indent(new StringBuilder(length), indentation, indentLevel, string).toString();
+    }
+
+    /**
+     * Appends an indented string to a <code>StringBuilder</code>, without any intermediate strings, 
+     * see {@link #indent(String, int, String)}.
+     * 
+     * @param sb					the <code>StringBuilder</code> to append to
+     * @param indentation			the indentation, may be null
+     * @param indentLevel			the level of the indentation
+     * @param string				the string to be indented
+     * @return the <code>StringBuilder</code>
+     */
+    public static StringBuilder indent(StringBuilder sb, CharSequence indentation, int indentLevel, CharSequence string) {
+    	
+    	try {
+    		appendIndent(sb, indentation, indentLevel, string);
+    	} catch (IOException e) {
+    		throw new UncheckedIOException(e);		// never thrown by a StringBuilder
+    	}
+    	return sb;
+    }
+
+    /**
+     * Appends an indented string to an <code>Appendable</code> (e.g. a <code>Writer</code>), 
+     * without any intermediate strings, see {@link #indent(String, int, String)}.
+     * 
+     * @param <A>					the type of the <code>Appendable</code>
+     * @param appendable			the <code>Appendable</code> to append to
+     * @param indentation			the indentation, may be null
+     * @param indentLevel			the level of the indentation
+     * @param string				the string to be indented
+     * @return the <code>Appendable</code>
+     * @throws IOException in case of IO errors of the <code>Appendable</code>
+     */
+    public static <A extends Appendable> A indent(A appendable, CharSequence indentation, int indentLevel, 
+    		CharSequence string) throws IOException {
+    	
+    	appendIndent(appendable, indentation, indentLevel, string);
+    	return appendable;
     }
     
     /**
@@ -208,18 +346,53 @@ public class Strings {
     public static <T> String listToString(List<T> list, String fillerLeft, 
     		String fillerRight, boolean addLastRightFiller) {
     	
-    	StringBuilder sb = new StringBuilder();
-    	fillerLeft = fillerLeft == null ? "" : fillerLeft;
-    	fillerRight = fillerRight == null ? "" : fillerRight;
-    	for (int i = 0; i < list.size() - 1; i++) {
-    		sb.append(fillerLeft);
-    		sb.append(list.get(i).toString()).append(fillerRight);
-		}
-    	sb.append(fillerLeft).append(list.get(list.size() - 1).toString());
-    	if (addLastRightFiller) {
-			sb.append(fillerRight);
-		}
-    	return sb.toString();
+    	return listToString(new StringBuilder(), list, fillerLeft, fillerRight, addLastRightFiller).toString();
+    }
+
+    /**
+     * Appends the elements of an <code>Iterable</code> (e.g. a <code>List</code>) concatenated with fillers 
+     * to a <code>StringBuilder</code>, without any intermediate strings (elements which are 
+     * <code>CharSequence</code>s are appended directly), see {@link #listToString(List, String, String, boolean)}.
+     * 
+     * @param <T>					generic type parameter for the elements of the <code>Iterable</code>
+     * @param sb					the <code>StringBuilder</code> to append to
+     * @param elements				the elements
+     * @param fillerLeft			a filler added before each element, may be null
+     * @param fillerRight			a filler added after each element, may be null
+     * @param addLastRightFiller	if false, no <code>fillerRight</code> is added for the last element
+     * @return the <code>StringBuilder</code>
+     */
+    public static <T> StringBuilder listToString(StringBuilder sb, Iterable<T> elements, CharSequence fillerLeft, 
+    		CharSequence fillerRight, boolean addLastRightFiller) {
+    	
+    	try {
+    		appendList(sb, elements, fillerLeft, fillerRight, addLastRightFiller);
+    	} catch (IOException e) {
+    		throw new UncheckedIOException(e);		// never thrown by a StringBuilder
+    	}
+    	return sb;
+    }
+
+    /**
+     * Appends the elements of an <code>Iterable</code> (e.g. a <code>List</code>) concatenated with fillers 
+     * to an <code>Appendable</code> (e.g. a <code>Writer</code>), without any intermediate strings (elements which are 
+     * <code>CharSequence</code>s are appended directly), see {@link #listToString(List, String, String, boolean)}.
+     * 
+     * @param <A>					the type of the <code>Appendable</code>
+     * @param <T>					generic type parameter for the elements of the <code>Iterable</code>
+     * @param appendable			the <code>Appendable</code> to append to
+     * @param elements				the elements
+     * @param fillerLeft			a filler added before each element, may be null
+     * @param fillerRight			a filler added after each element, may be null
+     * @param addLastRightFiller	if false, no <code>fillerRight</code> is added for the last element
+     * @return the <code>Appendable</code>
+     * @throws IOException in case of IO errors of the <code>Appendable</code>
+     */
+    public static <A extends Appendable, T> A listToString(A appendable, Iterable<T> elements, CharSequence fillerLeft, 
+    		CharSequence fillerRight, boolean addLastRightFiller) throws IOException {
+    	
+    	appendList(appendable, elements, fillerLeft, fillerRight, addLastRightFiller);
+    	return appendable;
     }
 	
     /**
@@ -242,7 +415,41 @@ public class Strings {
     	
     	return fillRight(null, length, repetition);
     }
-	
+
+    /**
+     * Appends repeated characters until a length is reached to a <code>StringBuilder</code>,
+     * see {@link #repeat(int, String)}.
+     * 
+     * @param sb					the <code>StringBuilder</code> to append to
+     * @param length				the number of characters to append
+     * @param repetition			the characters to be repeated
+     * @return the <code>StringBuilder</code>
+     * @throws IllegalArgumentException if <code>repetition</code> is <code>null</code> or empty ("")
+     */
+    public static StringBuilder repeat(StringBuilder sb, int length, CharSequence repetition) 
+    		throws IllegalArgumentException {
+    	
+    	return fillRight(sb, null, length, repetition);
+    }
+
+    /**
+     * Appends repeated characters until a length is reached to an <code>Appendable</code>
+     * (e.g. a <code>Writer</code>), see {@link #repeat(int, String)}.
+     * 
+     * @param <A>					the type of the <code>Appendable</code>
+     * @param appendable			the <code>Appendable</code> to append to
+     * @param length				the number of characters to append
+     * @param repetition			the characters to be repeated
+     * @return the <code>Appendable</code>
+     * @throws IOException in case of IO errors of the <code>Appendable</code>
+     * @throws IllegalArgumentException if <code>repetition</code> is <code>null</code> or empty ("")
+     */
+    public static <A extends Appendable> A repeat(A appendable, int length, CharSequence repetition) 
+    		throws IOException, IllegalArgumentException {
+    	
+    	return fillRight(appendable, null, length, repetition);
+    }
+
 	/**
 	 * Returns a string stripped-down by an ending or the string itself if it has
 	 * another ending.<br />
@@ -291,8 +498,8 @@ public class Strings {
      * Wraps a (long) string after given delimiter characters, depending of <code>wrapColumn</code>.<br />
      * This is done by inserting newline characters into the resulting string.
      * Each wrapped line contains at least one character/string which is not a delimiter.<br />
-     * Note: <code>wrapColumn()</code> uses <code>StringTokenizer</code> for a much simpler
-     * behavior than using regular expressions, otherwise the caller would need much more effort and testing. 
+     * Note: the wrapping is done in a single pass by a {@link LineWrapper}, which can also wrap
+     * a <code>Reader</code> or chunks of text into a <code>Stream</code> of lines. 
      * 
      * <pre>
      * Examples:
@@ -325,35 +532,12 @@ public class Strings {
      */
     public static String wrapByColumn(String string, String delimiters, boolean returnDelims, int wrapColumn) {
     	
-       	if (wrapColumn == 0) {
-       		return wrapToString(string, delimiters, returnDelims);
-		}
-    	List<String> list = wrapToList(string, delimiters, returnDelims);
-       	StringBuilder sb = new StringBuilder();
-       	int length = 0;
-       	if (wrapColumn > 0) {
-       		for (int i = 0; i < list.size(); i++) {
-       			String str = list.get(i);
-           		sb.append(str);
-           		length += str.length();
-           		if (length >= wrapColumn && i != list.size() - 1) {
-           			sb.append('\n');
-           			length = 0;
-				}
-			}
-       		return sb.toString();
-       	}
-       	// wrapColumn < 0
-       	wrapColumn = -wrapColumn;
-   		for (int i = 0; i < list.size(); i++) {
-   			String str = list.get(i);
-       		if (length > 0 && length + str.length() > wrapColumn) {
-       			sb.append('\n');
-       			length = 0;
-			}
-       		sb.append(str);
-       		length += str.length();
-		}
+    	StringBuilder sb = new StringBuilder(string.length() + 16);
+    	try {
+    		new LineWrapper(delimiters, returnDelims, wrapColumn).wrap(string, sb, "\n");
+    	} catch (IOException e) {
+    		throw new UncheckedIOException(e);		// never thrown by a StringBuilder
+    	}
      	return sb.toString();
     }
 
@@ -361,8 +545,8 @@ public class Strings {
      * Wraps a (long) string after given delimiter characters.<br />
      * This is done by adding each wrapped string to an <code>ArrayList</code>, not adding a newline.
      * Each wrapped line contains at least one character/string which is not a delimiter.<br />
-     * Note: <code>wrapToList()</code> uses <code>StringTokenizer</code> for a much simpler
-     * behavior than using regular expressions, otherwise the caller would need much more effort and testing. 
+     * Note: the wrapping is done in a single pass by a {@link LineWrapper}, which can also wrap
+     * a <code>Reader</code> or chunks of text into a <code>Stream</code> of lines. 
      * 
      * <pre>
      * Examples:
@@ -385,30 +569,8 @@ public class Strings {
      */
     public static List<String> wrapToList(String string, String delimiters, boolean returnDelims) {
     	
-    	StringTokenizer st = new StringTokenizer(string, delimiters, true);
     	ArrayList<String> list = new ArrayList<>();
-    	String last = "";
-        while (st.hasMoreTokens()) {
-            String str = st.nextToken();
-            if (str.length() == 1 && delimiters.indexOf(str) >= 0) {
-				// it is a delimiter
-            	if (returnDelims) {
-					list.add(last + str);
-				} else {
-					if (!last.equals("")) {
-						list.add(last);
-					}
-				}
-				last = "";
-			} else {
-				// not a delimiter, but may have the length of one
-				last = str;
-			}
-        }
-        if (!"".equals(last)) {
-        	// the last one was not added
-			list.add(last);
-		}
+    	new LineWrapper(delimiters, returnDelims, 0).wrap(string, list::add);
     	return list;
     }
 
@@ -416,8 +578,8 @@ public class Strings {
      * Wraps a (long) string after given delimiter characters.<br />
      * This is done by adding each wrapped string to an <code>ArrayList</code>, not adding a newline.
      * Each wrapped line contains at least one character/string which is not a delimiter.<br />
-     * Note: <code>wrapToList()</code> uses <code>StringTokenizer</code> for a much simpler
-     * behavior than using regular expressions, otherwise the caller would need much more effort and testing. 
+     * Note: the wrapping is done in a single pass by a {@link LineWrapper}, which can also wrap
+     * a <code>Reader</code> or chunks of text into a <code>Stream</code> of lines. 
      * 
      * <pre>
      * Examples:
@@ -441,23 +603,8 @@ public class Strings {
      */
     public static List<String> wrapToList(String string, String delimiters, boolean returnDelims, int count) {
     	
-    	List<String> list = wrapToList(string, delimiters, returnDelims);
      	ArrayList<String> wrappedList = new ArrayList<>();
-     	int wrapCount = 0;
-       	StringBuilder sb = new StringBuilder();
-       	for (String element : list) {
-       		sb.append(element);
-       		wrapCount++;
-       		if (wrapCount == count) {
-       			wrappedList.add(sb.toString());
-       			sb = new StringBuilder();
-       			wrapCount = 0;
-			}
-		}
-       	if (wrapCount > 0) {
-        	// the last one was not added
-   			wrappedList.add(sb.toString());
-		}
+     	LineWrapper.byCount(delimiters, returnDelims, count).wrap(string, wrappedList::add);
        	return wrappedList;
     }
 
@@ -465,8 +612,8 @@ public class Strings {
      * Wraps a (long) string after given delimiter characters.<br />
      * This is done by inserting newline characters into the resulting string.
      * Each wrapped line contains at least one character/string which is not a delimiter.<br />
-     * Note: <code>wrapToString()</code> uses <code>StringTokenizer</code> for a much simpler
-     * behavior than using regular expressions, otherwise the caller would need much more effort and testing. 
+     * Note: the wrapping is done in a single pass by a {@link LineWrapper}, which can also wrap
+     * a <code>Reader</code> or chunks of text into a <code>Stream</code> of lines. 
      * 
      * <pre>
      * Examples:
@@ -493,12 +640,165 @@ public class Strings {
      */
     public static String wrapToString(String string, String delimiters, boolean returnDelims) {
     	
-    	List<String> list = wrapToList(string, delimiters, returnDelims);
-       	StringBuilder sb = new StringBuilder();
-       	for (int i = 0; i < list.size() - 1; i++) {
-       		sb.append(list.get(i)).append('\n');
+    	return wrapByColumn(string, delimiters, returnDelims, 0);
+    }
+
+    /**
+     * Appends a centered string with borders, see {@link #center(String, String, String, int)}.
+     * 
+     * @param out				the <code>Appendable</code> to append to
+     * @param leftBorder		the left side border, may be null
+     * @param string			the string to be centered, may be null
+     * @param rightBorder		the right side border, may be null
+     * @param length			the length of the appended characters
+     * @throws IOException in case of IO errors of the <code>Appendable</code>
+     */
+    private static void appendCenter(Appendable out, CharSequence leftBorder, CharSequence string, 
+    		CharSequence rightBorder, int length) throws IOException {
+    	
+    	leftBorder = leftBorder == null ? "" : leftBorder;
+    	rightBorder = rightBorder == null ? "" : rightBorder;
+    	string = string == null ? "" : string;
+    	out.append(leftBorder);
+    	// if odd, the right side is on blank longer then the left side
+    	int half = (length - string.length()) / 2;
+    	appendSpaces(out, half - leftBorder.length());
+    	out.append(string);
+    	appendSpaces(out, length - rightBorder.length() - Math.max(half, leftBorder.length()) - string.length());
+    	out.append(rightBorder);
+    }
+
+    /**
+     * Appends a string filled on its left side, see {@link #fillLeft(String, int, String)}.
+     * 
+     * @param out				the <code>Appendable</code> to append to
+     * @param origin			the origin, may be null or empty
+     * @param maxLength			the number of characters to append
+     * @param filler			the characters to fill in
+     * @throws IOException in case of IO errors of the <code>Appendable</code>
+     * @throws IllegalArgumentException if <code>filler</code> is <code>null</code> or empty ("")
+     */
+    private static void appendFillLeft(Appendable out, CharSequence origin, int maxLength, CharSequence filler) 
+    		throws IOException, IllegalArgumentException {
+    	
+    	CharSequence s = origin != null ? origin : "";
+    	appendFiller(out, maxLength - s.length(), filler);
+    	out.append(s);
+    }
+
+    /**
+     * Appends a string filled on its right side, see {@link #fillRight(String, int, String)}.
+     * 
+     * @param out				the <code>Appendable</code> to append to
+     * @param origin			the origin, may be null or empty
+     * @param maxLength			the number of characters to append
+     * @param filler			the characters to fill in
+     * @throws IOException in case of IO errors of the <code>Appendable</code>
+     * @throws IllegalArgumentException if <code>filler</code> is <code>null</code> or empty ("")
+     */
+    private static void appendFillRight(Appendable out, CharSequence origin, int maxLength, CharSequence filler) 
+    		throws IOException, IllegalArgumentException {
+    	
+    	CharSequence s = origin != null ? origin : "";
+    	out.append(s);
+    	appendFiller(out, maxLength - s.length(), filler);
+    }
+
+    /**
+     * Appends a filler repeatedly until a number of characters is appended, the last
+     * repetition may be truncated.
+     * 
+     * @param out				the <code>Appendable</code> to append to
+     * @param count				the number of characters to append, nothing is appended if less than one
+     * @param filler			the characters to fill in
+     * @throws IOException in case of IO errors of the <code>Appendable</code>
+     * @throws IllegalArgumentException if <code>filler</code> is <code>null</code> or empty ("")
+     */
+    private static void appendFiller(Appendable out, int count, CharSequence filler) 
+    		throws IOException, IllegalArgumentException {
+    	
+    	if (count <= 0) {
+			return;
+		}
+    	if (filler == null || filler.length() == 0) {
+			throw new IllegalArgumentException("Filler cannot be null or empty");
+		}
+    	int fillerLength = filler.length();
+    	if (fillerLength == 1) {
+    		char c = filler.charAt(0);
+    		for (int i = 0; i < count; i++) {
+    			out.append(c);
+			}
+    		return;
+		}
+    	for (; count >= fillerLength; count -= fillerLength) {
+    		out.append(filler);
+		}
+    	out.append(filler, 0, count);
+    }
+
+    /**
+     * Appends an indented string, see {@link #indent(String, int, String)}.
+     * 
+     * @param out					the <code>Appendable</code> to append to
+     * @param indentation			the indentation, may be null
+     * @param indentLevel			the level of the indentation
+     * @param string				the string to be indented
+     * @throws IOException in case of IO errors of the <code>Appendable</code>
+     */
+    private static void appendIndent(Appendable out, CharSequence indentation, int indentLevel, CharSequence string) 
+    		throws IOException {
+    	
+    	if (indentation != null) {
+    		for (int i = 0; i < indentLevel; i++) {
+    			out.append(indentation);
+    		}
+		}
+    	out.append(string);
+    }
+
+    /**
+     * Appends elements concatenated with fillers, see {@link #listToString(List, String, String, boolean)}.
+     * 
+     * @param <T>					generic type parameter for the elements of the <code>Iterable</code>
+     * @param out					the <code>Appendable</code> to append to
+     * @param elements				the elements
+     * @param fillerLeft			a filler added before each element, may be null
+     * @param fillerRight			a filler added after each element, may be null
+     * @param addLastRightFiller	if false, no <code>fillerRight</code> is added for the last element
+     * @throws IOException in case of IO errors of the <code>Appendable</code>
+     */
+    private static <T> void appendList(Appendable out, Iterable<T> elements, CharSequence fillerLeft, 
+    		CharSequence fillerRight, boolean addLastRightFiller) throws IOException {
+    	
+    	fillerLeft = fillerLeft == null ? "" : fillerLeft;
+    	fillerRight = fillerRight == null ? "" : fillerRight;
+    	Iterator<T> iterator = elements.iterator();
+    	while (iterator.hasNext()) {
+    		T element = iterator.next();
+    		out.append(fillerLeft);
+    		if (element instanceof CharSequence) {
+				out.append((CharSequence) element);
+			} else {
+				out.append(String.valueOf(element));
+			}
+    		if (addLastRightFiller || iterator.hasNext()) {
+    			out.append(fillerRight);
+			}
+		}
+    }
+
+    /**
+     * Appends spaces.
+     * 
+     * @param out				the <code>Appendable</code> to append to
+     * @param count				the number of spaces, nothing is appended if less than one
+     * @throws IOException in case of IO errors of the <code>Appendable</code>
+     */
+    private static void appendSpaces(Appendable out, int count) throws IOException {
+    	
+    	for (int i = 0; i < count; i++) {
+			out.append(' ');
 		}
-       sb.append(list.get(list.size() - 1));
-    	return sb.toString();
     }
 }
@@ -0,0 +1,228 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil;
+
+import java.nio.charset.*;
+import java.time.*;
+import java.time.format.*;
+
+/**
+ * A thread-safe, allocation-light formatter of time stamps like "yyyy-MM-dd HH:mm:ss" or "HH:mm:ss.SSS",
+ * based on <code>java.time</code>.<br/>
+ * The formatted text of the current second is cached, therefore formatting many time stamps
+ * (e.g. one per log line, on many threads) only formats once per second and appends the milliseconds
+ * digits otherwise. Time stamps can be appended to a <code>StringBuilder</code> or written to a
+ * <code>byte[]</code> without creating any objects.
+ * <pre>
+ * Examples:
+ * 
+ * 		String stamp = TimeStamp.DATE_TIME.format();				// "2023-08-17 14:05:59"
+ * 
+ * 		StringBuilder sb = new StringBuilder();
+ * 		TimeStamp.TIME_MILLIS.append(sb).append(" started");		// "14:05:59.123 started"
+ * 
+ * 		TimeStamp stamp = new TimeStamp("dd.MM.yyyy HH:mm:ss", true, ZoneOffset.UTC);
+ * 		int length = stamp.write(buffer, 0);
+ * </pre>
+ */
+public class TimeStamp {
+
+	/** date and time like "yyyy-MM-dd HH:mm:ss", in the default time zone */
+	public static final TimeStamp DATE_TIME = new TimeStamp("yyyy-MM-dd HH:mm:ss", false);
+	/** date and time with milliseconds like "yyyy-MM-dd HH:mm:ss.SSS", in the default time zone */
+	public static final TimeStamp DATE_TIME_MILLIS = new TimeStamp("yyyy-MM-dd HH:mm:ss", true);
+	/** date and time like "yyyyMMdd HH:mm:ss", in the default time zone */
+	public static final TimeStamp COMPACT_DATE_TIME = new TimeStamp("yyyyMMdd HH:mm:ss", false);
+	/** time like "HH:mm:ss", in the default time zone */
+	public static final TimeStamp TIME = new TimeStamp("HH:mm:ss", false);
+	/** time with milliseconds like "HH:mm:ss.SSS", in the default time zone */
+	public static final TimeStamp TIME_MILLIS = new TimeStamp("HH:mm:ss", true);
+
+	/** the formatter of the seconds part */
+	private final DateTimeFormatter formatter;
+	/** true if milliseconds are appended */
+	private final boolean millis;
+	/** the cached text of the latest formatted second, replaced (never modified) by any thread */
+	private volatile Second cachedSecond = new Second(Long.MIN_VALUE, "");
+
+	/**
+	 * Construction of a time stamp format in the default time zone (of the time of construction).
+	 * 
+	 * @param pattern		the pattern of <code>DateTimeFormatter</code> with a resolution of seconds
+	 * 						or less, like "yyyy-MM-dd HH:mm:ss"
+	 * @param millis		if true, the milliseconds are appended like ".SSS"
+	 * @throws IllegalArgumentException if the pattern is invalid
+	 */
+	public TimeStamp(String pattern, boolean millis) throws IllegalArgumentException {
+
+		this(pattern, millis, ZoneId.systemDefault());
+	}
+
+	/**
+	 * Construction of a time stamp format.
+	 * 
+	 * @param pattern		the pattern of <code>DateTimeFormatter</code> with a resolution of seconds
+	 * 						or less, like "yyyy-MM-dd HH:mm:ss"
+	 * @param millis		if true, the milliseconds are appended like ".SSS"
+	 * @param zone			the time zone
+	 * @throws IllegalArgumentException if the pattern is invalid
+	 */
+	public TimeStamp(String pattern, boolean millis, ZoneId zone) throws IllegalArgumentException {
+
+		formatter = DateTimeFormatter.ofPattern(pattern).withZone(zone);
+		this.millis = millis;
+	}
+
+	/**
+	 * Appends the current time stamp to a <code>StringBuilder</code>.
+	 * 
+	 * @param sb		the <code>StringBuilder</code>
+	 * @return the <code>StringBuilder</code>
+	 */
+	public StringBuilder append(StringBuilder sb) {
+
+		return append(sb, System.currentTimeMillis());
+	}
+
+	/**
+	 * Appends the time stamp of a point in time to a <code>StringBuilder</code>.
+	 * 
+	 * @param sb				the <code>StringBuilder</code>
+	 * @param epochMillis		the milliseconds since the epoch, like <code>System.currentTimeMillis()</code>
+	 * @return the <code>StringBuilder</code>
+	 */
+	public StringBuilder append(StringBuilder sb, long epochMillis) {
+
+		sb.append(second(Math.floorDiv(epochMillis, 1000)).text);
+		if (millis) {
+			int ms = Math.floorMod(epochMillis, 1000);
+			sb.append('.').append((char) ('0' + ms / 100)).append((char) ('0' + ms / 10 % 10))
+					.append((char) ('0' + ms % 10));
+		}
+		return sb;
+	}
+
+	/**
+	 * Returns the current time stamp. Without milliseconds, the cached string is returned.
+	 * 
+	 * @return the time stamp
+	 */
+	public String format() {
+
+		return format(System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns the time stamp of a point in time.
+	 * 
+	 * @param epochMillis		the milliseconds since the epoch, like <code>System.currentTimeMillis()</code>
+	 * @return the time stamp
+	 */
+	public String format(long epochMillis) {
+
+		if (!millis) {
+			return second(Math.floorDiv(epochMillis, 1000)).text;
+		}
+		return append(new StringBuilder(32), epochMillis).toString();
+	}
+
+	/**
+	 * Returns the formatted text of a second, formats and caches it if it is not the cached one.
+	 * 
+	 * @param epochSecond		the seconds since the epoch
+	 * @return the formatted second
+	 */
+	private Second second(long epochSecond) {
+
+		Second second = cachedSecond;
+		if (second.epochSecond != epochSecond) {
+			second = new Second(epochSecond, formatter.format(Instant.ofEpochSecond(epochSecond)));
+			if (epochSecond > cachedSecond.epochSecond) {
+				// only newer seconds replace the cache, formatting an old time stamp does not disturb it
+				cachedSecond = second;
+			}
+		}
+		return second;
+	}
+
+	/**
+	 * Writes the current time stamp as UTF-8 bytes into an array.
+	 * 
+	 * @param bytes			the array
+	 * @param offset		the index of the first byte to write
+	 * @return the number of bytes written
+	 * @throws IndexOutOfBoundsException if the array is too small
+	 */
+	public int write(byte[] bytes, int offset) throws IndexOutOfBoundsException {
+
+		return write(bytes, offset, System.currentTimeMillis());
+	}
+
+	/**
+	 * Writes the time stamp of a point in time as UTF-8 bytes into an array.
+	 * 
+	 * @param bytes				the array
+	 * @param offset			the index of the first byte to write
+	 * @param epochMillis		the milliseconds since the epoch, like <code>System.currentTimeMillis()</code>
+	 * @return the number of bytes written
+	 * @throws IndexOutOfBoundsException if the array is too small
+	 */
+	public int write(byte[] bytes, int offset, long epochMillis) throws IndexOutOfBoundsException {
+
+		byte[] secondBytes = second(Math.floorDiv(epochMillis, 1000)).bytes;
+		int length = secondBytes.length + (millis ? 4 : 0);
+		if (offset < 0 || offset + length > bytes.length) {
+			throw new IndexOutOfBoundsException("Array too small for " + length + " bytes at " + offset);
+		}
+		System.arraycopy(secondBytes, 0, bytes, offset, secondBytes.length);
+		if (millis) {
+			int ms = Math.floorMod(epochMillis, 1000);
+			int i = offset + secondBytes.length;
+			bytes[i] = '.';
+			bytes[i + 1] = (byte) ('0' + ms / 100);
+			bytes[i + 2] = (byte) ('0' + ms / 10 % 10);
+			bytes[i + 3] = (byte) ('0' + ms % 10);
+		}
+		return length;
+	}
+
+	/**
+	 * The formatted text of a second, immutable.
+	 */
+	private static class Second {
+
+		/** the seconds since the epoch */
+		private final long epochSecond;
+		/** the formatted second */
+		private final String text;
+		/** the formatted second as UTF-8 bytes */
+		private final byte[] bytes;
+
+		/**
+		 * Construction of a formatted second.
+		 * 
+		 * @param epochSecond		the seconds since the epoch
+		 * @param text				the formatted second
+		 */
+		private Second(long epochSecond, String text) {
+
+			this.epochSecond = epochSecond;
+			this.text = text;
+			bytes = text.getBytes(StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -19,17 +19,29 @@ package org.jutil;
 import java.io.*;
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
 
 import javax.swing.*;
 
+import org.jutil.app.*;
+
 /**
  * General utility class with static methods, written for convenience reasons.
  */
 public class Util {
 
-	/** a date format for */
+	/** 
+	 * a date format like "yyyy-MM-dd HH:mm:ss"
+	 * @deprecated <code>SimpleDateFormat</code> is not thread-safe, use {@link TimeStamp#DATE_TIME}
+	 */
+	@Deprecated
 	public static final SimpleDateFormat DATE_FORMAT1 = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-	/** a date format for */
+	/** 
+	 * a date format like "yyyyMMdd HH:mm:ss"
+	 * @deprecated <code>SimpleDateFormat</code> is not thread-safe, use {@link TimeStamp#COMPACT_DATE_TIME}
+	 */
+	@Deprecated
 	public static final SimpleDateFormat DATE_FORMAT2 = new SimpleDateFormat("yyyyMMdd HH:mm:ss");
 
 	/**
@@ -39,27 +51,43 @@ public class Util {
 
 	}
 
+	/**
+	 * Returns the shared coarse clock with a resolution of {@link CachedClock#DEFAULT_RESOLUTION}, 
+	 * started at the first call. Reading the time or a time stamp from it does not create objects
+	 * and does not call the system.
+	 * 
+	 * <pre>
+	 * 		long now = Util.clock().millis();
+	 * 		String stamp = Util.clock().dateTimeStamp();
+	 * </pre>
+	 * 
+	 * @return the clock
+	 */
+	public static CachedClock clock() {
+
+		return ClockHolder.CLOCK;
+	}
+
 	/**
 	 * Creates a date and time stamp (without milliseconds) as a <code>String</code>,
-	 * like "yyyy-MM-dd HH:mm:ss".
+	 * like "yyyy-MM-dd HH:mm:ss". Thread-safe, see {@link TimeStamp}.
 	 * 
 	 * @return the date and time stamp string
 	 */
 	public static String createDateAndTimeStamp() {
 	
-		return DATE_FORMAT1.format(new Date());
+		return TimeStamp.DATE_TIME.format();
 	}
 
 	/**
 	 * Creates a time stamp (without milliseconds, without date) as a <code>String</code>, 
-	 * like "HH:mm:ss".
+	 * like "HH:mm:ss". Thread-safe, see {@link TimeStamp}.
 	 * 
 	 * @return the time stamp string
 	 */
 	public static String createTimeStamp() {
 	
-		SimpleDateFormat formatter = new SimpleDateFormat("HH:mm:ss");
-		return formatter.format(new Date());
+		return TimeStamp.TIME.format();
 	}
 
 	/**
@@ -90,7 +118,8 @@ public class Util {
 	
 	/**
 	 * Convenience method for Thread.sleep(millis).<br />
-	 * An InterruptedException will be ignored, the stack trace is shown on <code>System.out</code>.<br />
+	 * An InterruptedException will be ignored, but the interrupt status of the thread is restored,
+	 * so the caller can still detect it (e.g. to shut down a loop cleanly).<br />
 	 * Note: the thread calling this method will sleep. Therefore, if one calls it from
 	 * the event dispatching thread, a <code>RuntimeException</code> is thrown - otherwise the GUI would freeze.
 	 *
@@ -102,12 +131,71 @@ public class Util {
 	public static void sleep(long millis, boolean displayStackTrace) {
 
 		if (SwingUtilities.isEventDispatchThread()) {
+			Guards.fired("Util.sleep");
 			throw new RuntimeException("Do not call this method from the event dispatching thread!");
 		}
 		try {
 			Thread.sleep(millis);		
 		} catch (InterruptedException e) {
-			e.printStackTrace();
+			if (displayStackTrace) {
+				e.printStackTrace(System.out);
+			}
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits until a deadline of <code>System.nanoTime()</code> with a high resolution.
+	 * The thread is parked (also suitable for virtual threads), the last <code>spinNanos</code>
+	 * nanoseconds before the deadline are busy-waited to be more precise than the timer of the 
+	 * operating system (typically 50 microseconds up to a few milliseconds).
+	 * 
+	 * <pre>
+	 * 		long deadline = System.nanoTime() + 250_000;		// in 250 microseconds
+	 * 		Util.sleepUntil(deadline, 100_000);
+	 * </pre>
+	 *
+	 * @param deadlineNanos		the deadline as of <code>System.nanoTime()</code>
+	 * @param spinNanos			the nanoseconds to busy-wait before the deadline, zero to park only
+	 * @throws InterruptedException if the thread has been interrupted (the interrupt status is cleared,
+	 * 		like <code>Thread.sleep()</code> does)
+	 */
+	public static void sleepUntil(long deadlineNanos, long spinNanos) throws InterruptedException {
+
+		while (true) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			long remaining = deadlineNanos - System.nanoTime();
+			if (remaining <= 0) {
+				return;
+			}
+			if (remaining > spinNanos) {
+				LockSupport.parkNanos(remaining - spinNanos);
+			} else {
+				Thread.onSpinWait();
+			}
+		}
+	}
+	
+	/**
+	 * Returns an executor starting a new thread for each task. Virtual threads are used if the 
+	 * Java runtime supports them (Java 21+), otherwise the executor uses cached daemon threads.<br/>
+	 * Suitable for many tasks which are mostly blocked, e.g. waiting for I/O or processes.
+	 * 
+	 * @return the executor
+	 */
+	public static ExecutorService newThreadPerTaskExecutor() {
+
+		try {
+			// Java 21+, looked up by reflection to keep Java 17 compatibility
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable);
+				thread.setDaemon(true);
+				return thread;
+			});
 		}
 	}
 	
@@ -127,4 +215,13 @@ public class Util {
 		};
 		throw new NotImplementedException();
 	}
+
+	/**
+	 * Holder of the shared clock, started on first use.
+	 */
+	private static class ClockHolder {
+
+		/** the shared clock */
+		private static final CachedClock CLOCK = new CachedClock(CachedClock.DEFAULT_RESOLUTION);
+	}
 }
@@ -0,0 +1,71 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil.app;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Counters of fired guards, checks rejecting a misuse like calling a blocking method on the
+ * event dispatch thread. A guard counts itself before it throws its exception, therefore violations
+ * caught and ignored somewhere are still visible, e.g. by the <code>EdtMonitor</code> of <code>org.jutil.gui</code>.
+ * <pre>
+ * Example:
+ * 
+ * 		if (SwingUtilities.isEventDispatchThread()) {
+ * 			Guards.fired("Util.sleep");
+ * 			throw new RuntimeException("Do not call this method from the event dispatching thread!");
+ * 		}
+ * 		...
+ * 		System.out.println(Guards.getCounts());		// "{Util.sleep=3}"
+ * </pre>
+ */
+public class Guards {
+
+	/** the counts of the guards, by name */
+	private static final Map<String, LongAdder> COUNTS = new ConcurrentHashMap<>();
+
+	/**
+	 * Deny external construction.
+	 */
+	private Guards() {
+
+	}
+
+	/**
+	 * Counts a fired guard, called before the guard throws its exception.
+	 * 
+	 * @param guard		the name of the guard, like "Util.sleep"
+	 */
+	public static void fired(String guard) {
+
+		COUNTS.computeIfAbsent(guard, name -> new LongAdder()).increment();
+	}
+
+	/**
+	 * Returns the counts of the guards which have fired.
+	 * 
+	 * @return the counts by name of the guard, sorted by name
+	 */
+	public static Map<String, Long> getCounts() {
+
+		Map<String, Long> counts = new TreeMap<>();
+		COUNTS.forEach((guard, count) -> counts.put(guard, count.sum()));
+		return counts;
+	}
+}
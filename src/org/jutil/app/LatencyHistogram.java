@@ -0,0 +1,219 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil.app;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A thread-safe, low-overhead histogram of latencies in nanoseconds with logarithmic buckets:
+ * each power of two is divided into 8 buckets, therefore percentiles have a relative error of at most 12.5%
+ * for any value up to <code>Long.MAX_VALUE</code>, with a fixed memory of about 4 KB.
+ * Recording is an atomic increment, without locks and without creating objects.
+ * <pre>
+ * Example:
+ * 
+ * 		LatencyHistogram histogram = new LatencyHistogram();
+ * 		long start = System.nanoTime();
+ * 		...
+ * 		histogram.record(System.nanoTime() - start);
+ * 		System.out.println(histogram);		// "count=1000 mean=0.412ms p50=0.360ms p90=... max=3.120ms"
+ * </pre>
+ */
+public class LatencyHistogram {
+
+	/** the number of bits of the buckets per power of two */
+	private static final int SUB_BUCKET_BITS = 3;
+	/** the number of buckets per power of two */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** the number of buckets for values up to <code>Long.MAX_VALUE</code> */
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	/** the counts of the buckets */
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	/** the number of values */
+	private final LongAdder count = new LongAdder();
+	/** the sum of the values */
+	private final LongAdder sum = new LongAdder();
+	/** the maximum value */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Construction of an empty histogram.
+	 */
+	public LatencyHistogram() {
+
+	}
+
+	/**
+	 * Returns the index of the bucket of a value.
+	 * 
+	 * @param value		the value, not negative
+	 * @return the index of the bucket
+	 */
+	private static int bucket(long value) {
+
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Returns the highest value of a bucket.
+	 * 
+	 * @param bucket		the index of the bucket
+	 * @return the highest value
+	 */
+	private static long bucketLimit(int bucket) {
+
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		long lowest = (SUB_BUCKETS + bucket % SUB_BUCKETS) * width;
+		return lowest + (width - 1);
+	}
+
+	/**
+	 * Returns the number of recorded values.
+	 * 
+	 * @return the number of values
+	 */
+	public long getCount() {
+
+		return count.sum();
+	}
+
+	/**
+	 * Returns the maximum recorded value.
+	 * 
+	 * @return the maximum in nanoseconds, 0 if empty
+	 */
+	public long getMax() {
+
+		return max.get();
+	}
+
+	/**
+	 * Returns the mean of the recorded values.
+	 * 
+	 * @return the mean in nanoseconds, 0 if empty
+	 */
+	public double getMean() {
+
+		long n = count.sum();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * Returns the sum of the recorded values.
+	 * 
+	 * @return the sum in nanoseconds
+	 */
+	public long getSum() {
+
+		return sum.sum();
+	}
+
+	/**
+	 * Returns the value at a percentile: the highest value of its bucket (at most 12.5% above the exact value),
+	 * limited by the maximum.
+	 * 
+	 * @param percentile		the percentile, like 99.9
+	 * @return the value in nanoseconds, 0 if empty
+	 * @throws IllegalArgumentException if the percentile is not within 0 and 100
+	 */
+	public long getValueAtPercentile(double percentile) throws IllegalArgumentException {
+
+		if (!(percentile >= 0 && percentile <= 100)) {
+			throw new IllegalArgumentException("Invalid percentile: " + percentile);
+		}
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(bucketLimit(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Records a duration.
+	 * 
+	 * @param duration		the duration
+	 */
+	public void record(Duration duration) {
+
+		record(duration.toNanos());
+	}
+
+	/**
+	 * Records a latency.
+	 * 
+	 * @param nanos		the latency in nanoseconds, negative values count as 0
+	 */
+	public void record(long nanos) {
+
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(bucket(value));
+		count.increment();
+		sum.add(value);
+		if (value > max.get()) {
+			max.accumulateAndGet(value, Math::max);
+		}
+	}
+
+	/**
+	 * Removes all values. Values recorded concurrently may be partially removed.
+	 */
+	public void reset() {
+
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	/**
+	 * Returns a summary in milliseconds: the count, the mean, the percentiles 50, 90, 99, 99.9 and the maximum.
+	 */
+	@Override
+	public String toString() {
+
+		return String.format(Locale.ROOT, "count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms",
+				getCount(), getMean() / 1e6, getValueAtPercentile(50) / 1e6, getValueAtPercentile(90) / 1e6,
+				getValueAtPercentile(99) / 1e6, getValueAtPercentile(99.9) / 1e6, getMax() / 1e6);
+	}
+}
@@ -0,0 +1,375 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil.app;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * A lightweight registry of named metrics without any dependencies: counters (striped <code>LongAdder</code>s),
+ * gauges (sampled on demand) and latency histograms ({@link LatencyHistogram}, fixed memory).<br/>
+ * Metrics are created on first use, a name belongs to one kind of metric only. Recording does not lock
+ * and does not create objects, callers on hot paths should keep the returned metric instead of looking it up
+ * each time. A snapshot of all metrics can be exported as text or as JSON.<br/>
+ * {@link org.jutil.CommandExecutor} records to the default registry, see {@link org.jutil.CommandOptions#metrics(Metrics)}.
+ * <pre>
+ * Example:
+ * 
+ * 		Metrics metrics = Metrics.getDefault();
+ * 		Metrics.Counter requests = metrics.counter("http.requests");
+ * 		LatencyHistogram latency = metrics.histogram("http.latency");
+ * 		metrics.gauge("jvm.heapUsed", () -&gt; Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+ * 		...
+ * 		requests.increment();
+ * 		latency.record(System.nanoTime() - start);
+ * 		...
+ * 		System.out.println(metrics.toText());		// "http.latency count=1000 mean=0.412ms ...", "http.requests 1000", ...
+ * 		Files.writeString(Path.of("metrics.json"), metrics.toJson());
+ * </pre>
+ */
+public class Metrics {
+
+	/** the metrics by name: counters, gauges (suppliers) and histograms */
+	private final ConcurrentMap<String, Object> metrics = new ConcurrentHashMap<>();
+
+	/**
+	 * Construction of an empty registry.
+	 */
+	public Metrics() {
+
+	}
+
+	/**
+	 * Appends a string as JSON string literal.
+	 * 
+	 * @param sb			the builder
+	 * @param string		the string
+	 * @return the builder
+	 */
+	private static StringBuilder appendJsonString(StringBuilder sb, String string) {
+
+		sb.append('"');
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"');
+	}
+
+	/**
+	 * Appends a value of a snapshot as JSON value: numbers as they are (NaN and infinity as null),
+	 * maps as JSON objects.
+	 * 
+	 * @param sb			the builder
+	 * @param value			the value
+	 * @return the builder
+	 */
+	private static StringBuilder appendJsonValue(StringBuilder sb, Object value) {
+
+		if (value instanceof Map) {
+			sb.append('{');
+			String separator = "";
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				appendJsonString(sb.append(separator), entry.getKey().toString()).append(':');
+				appendJsonValue(sb, entry.getValue());
+				separator = ",";
+			}
+			return sb.append('}');
+		}
+		if (value instanceof Double && (((Double) value).isNaN() || ((Double) value).isInfinite())) {
+			return sb.append("null");
+		}
+		return sb.append(formatNumber((Number) value));
+	}
+
+	/**
+	 * Returns the counter of a name, it is created if it does not exist.
+	 * 
+	 * @param name		the name of the metric, like "command.outputBytes"
+	 * @return the counter
+	 * @throws IllegalArgumentException if the name belongs to another kind of metric
+	 */
+	public Counter counter(String name) throws IllegalArgumentException {
+
+		return metric(name, Counter.class, Counter::new);
+	}
+
+	/**
+	 * Formats a number: integral values without a fraction, others like <code>Double.toString()</code>.
+	 * 
+	 * @param number		the number
+	 * @return the formatted number
+	 */
+	private static String formatNumber(Number number) {
+
+		if (number instanceof Double) {
+			double value = number.doubleValue();
+			if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+				return Long.toString((long) value);
+			}
+		}
+		return number.toString();
+	}
+
+	/**
+	 * Registers a gauge, a value sampled when a snapshot is taken. An existing gauge of the name is replaced.
+	 * 
+	 * @param name			the name of the metric, like "jvm.heapUsed"
+	 * @param supplier		the supplier of the value, called by the thread taking the snapshot
+	 * @throws IllegalArgumentException if the name belongs to another kind of metric
+	 */
+	public void gauge(String name, DoubleSupplier supplier) throws IllegalArgumentException {
+
+		Objects.requireNonNull(supplier);
+		metrics.compute(name, (key, metric) -> {
+			if (metric != null && !(metric instanceof DoubleSupplier)) {
+				throw new IllegalArgumentException("Metric '" + name + "' is not a gauge");
+			}
+			return supplier;
+		});
+	}
+
+	/**
+	 * Returns the default registry, shared by the application.
+	 * 
+	 * @return the default registry
+	 */
+	public static Metrics getDefault() {
+
+		return DefaultHolder.METRICS;
+	}
+
+	/**
+	 * Returns the latency histogram of a name, it is created if it does not exist.
+	 * 
+	 * @param name		the name of the metric, like "command.run"
+	 * @return the histogram
+	 * @throws IllegalArgumentException if the name belongs to another kind of metric
+	 */
+	public LatencyHistogram histogram(String name) throws IllegalArgumentException {
+
+		return metric(name, LatencyHistogram.class, LatencyHistogram::new);
+	}
+
+	/**
+	 * Returns the metric of a name, it is created if it does not exist.
+	 * 
+	 * @param <M>			the type of the metric
+	 * @param name			the name of the metric
+	 * @param type			the class of the metric
+	 * @param factory		the factory of a new metric
+	 * @return the metric
+	 * @throws IllegalArgumentException if the name belongs to another kind of metric
+	 */
+	private <M> M metric(String name, Class<M> type, Supplier<M> factory) throws IllegalArgumentException {
+
+		Object metric = metrics.get(name);
+		if (metric == null) {
+			metric = metrics.computeIfAbsent(name, key -> factory.get());
+		}
+		if (!type.isInstance(metric)) {
+			throw new IllegalArgumentException("Metric '" + name + "' is not a " + type.getSimpleName());
+		}
+		return type.cast(metric);
+	}
+
+	/**
+	 * Removes a metric, references to it still work, but it is no longer part of the snapshots.
+	 * 
+	 * @param name		the name of the metric
+	 */
+	public void remove(String name) {
+
+		metrics.remove(name);
+	}
+
+	/**
+	 * Resets all counters and histograms to zero, gauges are not affected.
+	 */
+	public void reset() {
+
+		for (Object metric : metrics.values()) {
+			if (metric instanceof Counter) {
+				((Counter) metric).reset();
+			} else if (metric instanceof LatencyHistogram) {
+				((LatencyHistogram) metric).reset();
+			}
+		}
+	}
+
+	/**
+	 * Takes a snapshot of all metrics, sorted by name: counters as <code>Long</code>, gauges as <code>Double</code>
+	 * and histograms as map of "count", "sum", "mean", "p50", "p90", "p99", "p99.9" and "max" (in nanoseconds).
+	 * A gauge whose supplier throws an exception has the value NaN.
+	 * 
+	 * @return the values by name
+	 */
+	public SortedMap<String, Object> snapshot() {
+
+		SortedMap<String, Object> snapshot = new TreeMap<>();
+		metrics.forEach((name, metric) -> {
+			if (metric instanceof Counter) {
+				snapshot.put(name, ((Counter) metric).get());
+			} else if (metric instanceof LatencyHistogram) {
+				LatencyHistogram histogram = (LatencyHistogram) metric;
+				Map<String, Number> values = new LinkedHashMap<>();
+				values.put("count", histogram.getCount());
+				values.put("sum", histogram.getSum());
+				values.put("mean", histogram.getMean());
+				values.put("p50", histogram.getValueAtPercentile(50));
+				values.put("p90", histogram.getValueAtPercentile(90));
+				values.put("p99", histogram.getValueAtPercentile(99));
+				values.put("p99.9", histogram.getValueAtPercentile(99.9));
+				values.put("max", histogram.getMax());
+				snapshot.put(name, values);
+			} else {
+				double value;
+				try {
+					value = ((DoubleSupplier) metric).getAsDouble();
+				} catch (RuntimeException e) {
+					value = Double.NaN;
+				}
+				snapshot.put(name, value);
+			}
+		});
+		return snapshot;
+	}
+
+	/**
+	 * Returns a snapshot of all metrics as JSON object, see {@link #snapshot()}.
+	 * <pre>
+	 * 		{"command.exitCode.0":12,"command.run":{"count":12,"sum":...,"max":81234567},...}
+	 * </pre>
+	 * 
+	 * @return the JSON text
+	 */
+	public String toJson() {
+
+		return appendJsonValue(new StringBuilder(), snapshot()).toString();
+	}
+
+	/**
+	 * Returns a snapshot of all metrics as text, a line "name value" per metric, sorted by name.
+	 * Histograms are summarized in milliseconds, see {@link LatencyHistogram#toString()}.
+	 * 
+	 * @return the text
+	 */
+	public String toText() {
+
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, Object> entry : snapshot().entrySet()) {
+			sb.append(entry.getKey()).append(' ');
+			Object metric = metrics.get(entry.getKey());
+			if (entry.getValue() instanceof Map && metric instanceof LatencyHistogram) {
+				sb.append(metric);
+			} else if (entry.getValue() instanceof Number) {
+				sb.append(formatNumber((Number) entry.getValue()));
+			} else {
+				sb.append(entry.getValue());
+			}
+			sb.append(System.lineSeparator());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the snapshot as text, see {@link #toText()}.
+	 */
+	@Override
+	public String toString() {
+
+		return toText();
+	}
+
+	/**
+	 * A counter, a striped <code>LongAdder</code>: increments from many threads do not contend.
+	 */
+	public static class Counter {
+
+		/** the count */
+		private final LongAdder count = new LongAdder();
+
+		/**
+		 * Construction of a counter of zero.
+		 */
+		private Counter() {
+
+		}
+
+		/**
+		 * Adds a value.
+		 * 
+		 * @param value		the value
+		 */
+		public void add(long value) {
+
+			count.add(value);
+		}
+
+		/**
+		 * Returns the current count.
+		 * 
+		 * @return the count
+		 */
+		public long get() {
+
+			return count.sum();
+		}
+
+		/**
+		 * Increments the count by one.
+		 */
+		public void increment() {
+
+			count.increment();
+		}
+
+		/**
+		 * Resets the count to zero.
+		 */
+		public void reset() {
+
+			count.reset();
+		}
+
+		/**
+		 * Returns the count.
+		 */
+		@Override
+		public String toString() {
+
+			return Long.toString(get());
+		}
+	}
+
+	/**
+	 * The holder of the default registry, created on first use.
+	 */
+	private static class DefaultHolder {
+
+		/** the shared registry */
+		private static final Metrics METRICS = new Metrics();
+	}
+}
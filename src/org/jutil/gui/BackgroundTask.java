@@ -0,0 +1,441 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil.gui;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+import org.jutil.*;
+import org.jutil.app.*;
+
+/**
+ * A task computing a result in the background, replacing <code>SwingWorker</code>: it runs on a virtual thread
+ * (if available) or on a given executor like a bounded thread pool, and passes partial results and its progress
+ * to the event dispatch thread (EDT) by an {@link EdtDispatcher}. Partial results published at a high rate are
+ * collected into batches, the progress is coalesced to its latest value, therefore the EDT handles at most
+ * one event per tick and keeps painting.<br/>
+ * All callbacks (<code>process()</code>, <code>progressChanged()</code>, <code>succeeded()</code>,
+ * <code>failed()</code>, <code>cancelled()</code>, <code>finished()</code>) are called on the EDT,
+ * the partial results and the progress always before the completion. Components can be disabled
+ * while the task is running, their prior states are restored afterwards.
+ * <pre>
+ * Example:
+ * 
+ * 		BackgroundTask&lt;Integer, String&gt; task = new BackgroundTask&lt;&gt;() {
+ * 			protected Integer compute() throws Exception {
+ * 				int count = 0;
+ * 				for (Path file : files) {
+ * 					if (isCancelled()) {
+ * 						break;
+ * 					}
+ * 					publish(process(file));
+ * 					setProgress(100 * ++count / files.size());
+ * 				}
+ * 				return count;
+ * 			}
+ * 			protected void process(List&lt;String&gt; lines) {
+ * 				lines.forEach(line -&gt; logArea.append(line + "\n"));
+ * 			}
+ * 			protected void progressChanged(int progress) {
+ * 				progressBar.setValue(progress);
+ * 			}
+ * 			protected void succeeded(Integer count) {
+ * 				statusLabel.setText(count + " files");
+ * 			}
+ * 		};
+ * 		task.disableWhileRunning(startButton).execute();
+ * 		...
+ * 		task.cancel(true);								// e.g. by a cancel button
+ * </pre>
+ * 
+ * @param <R>		the type of the result
+ * @param <P>		the type of the partial results
+ */
+public abstract class BackgroundTask<R, P> implements Future<R> {
+
+	/** the key of the partial results */
+	private final Object chunksKey = new Object();
+	/** the key of the progress */
+	private final Object progressKey = new Object();
+	/** the key of the completion */
+	private final Object completionKey = new Object();
+	/** the components to disable while running */
+	private final List<Component> disabledComponents = new ArrayList<>();
+	/** the prior states of the children of the disabled components */
+	private final List<Gui.EnabledStates> priorStates = new ArrayList<>();
+	/** the disabled components which have been enabled */
+	private final List<Component> priorEnabled = new ArrayList<>();
+	/** the dispatcher of the updates of the GUI */
+	private EdtDispatcher dispatcher = EdtDispatcher.getDefault();
+	/** the future computing the result, null before execution */
+	private volatile FutureTask<R> future;
+	/** the progress, 0 to 100 */
+	private volatile int progress;
+	/** true after the completion has started, accessed on the EDT only */
+	private boolean completed;
+
+	/**
+	 * Construction of a task, not yet executed.
+	 */
+	protected BackgroundTask() {
+
+	}
+
+	/**
+	 * Cancels the task, see <code>Future.cancel()</code>. Partial results published afterwards are discarded,
+	 * <code>cancelled()</code> and <code>finished()</code> are called on the EDT.
+	 * 
+	 * @param mayInterruptIfRunning		true to interrupt the thread of the task
+	 * @return false if the task could not be cancelled, typically because it has already completed
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+
+		FutureTask<R> task = future;
+		return task != null && task.cancel(mayInterruptIfRunning);
+	}
+
+	/**
+	 * Called on the EDT if the task has been cancelled.
+	 */
+	protected void cancelled() {
+
+	}
+
+	/**
+	 * Completes the task on the EDT: calls the callbacks of the outcome, restores the disabled components.
+	 */
+	private void complete() {
+
+		completed = true;
+		try {
+			if (future.isCancelled()) {
+				cancelled();
+			} else {
+				try {
+					succeeded(future.get());
+				} catch (ExecutionException e) {
+					failed(e.getCause());
+				} catch (InterruptedException e) {
+					// not possible, the future is done
+					Thread.currentThread().interrupt();
+				}
+			}
+		} finally {
+			for (Gui.EnabledStates states : priorStates) {
+				states.restore();
+			}
+			for (Component component : priorEnabled) {
+				component.setEnabled(true);
+			}
+			finished();
+		}
+	}
+
+	/**
+	 * Computes the result, called on a background thread. Call <code>isCancelled()</code> regularly
+	 * and stop if it returns true, or stop when interrupted.
+	 * 
+	 * @return the result
+	 * @throws Exception if the computation fails
+	 */
+	protected abstract R compute() throws Exception;
+
+	/**
+	 * Sets the components to disable while the task is running, including their children
+	 * (see {@link Gui#enableComponents(Container, boolean)}). Disable as few as possible,
+	 * like the button starting the task. Their prior states are restored after the task.
+	 * 
+	 * @param components		the components
+	 * @return this task
+	 */
+	public BackgroundTask<R, P> disableWhileRunning(Component... components) {
+
+		disabledComponents.addAll(Arrays.asList(components));
+		return this;
+	}
+
+	/**
+	 * Sets the dispatcher of the updates of the GUI.
+	 * 
+	 * @param dispatcher		the dispatcher, the default is {@link EdtDispatcher#getDefault()}
+	 * @return this task
+	 */
+	public BackgroundTask<R, P> dispatcher(EdtDispatcher dispatcher) {
+
+		this.dispatcher = dispatcher;
+		return this;
+	}
+
+	/**
+	 * Disables the components on the EDT.
+	 */
+	private void disableComponents() {
+
+		for (Component component : disabledComponents) {
+			Gui.EnabledStates states = component instanceof Container
+					? Gui.enableComponents((Container) component, false, null) : null;
+			if (component.isEnabled()) {
+				component.setEnabled(false);
+				priorEnabled.add(component);
+			}
+			if (states != null) {
+				priorStates.add(states);
+			}
+		}
+	}
+
+	/**
+	 * Executes the task on a virtual thread, or on a new daemon thread before Java 21.
+	 * 
+	 * @return this task
+	 * @throws IllegalStateException if the task has already been executed
+	 */
+	public BackgroundTask<R, P> execute() throws IllegalStateException {
+
+		return execute(ExecutorHolder.EXECUTOR);
+	}
+
+	/**
+	 * Executes the task by an executor, like a bounded thread pool.
+	 * 
+	 * @param executor		the executor
+	 * @return this task
+	 * @throws IllegalStateException if the task has already been executed
+	 */
+	public BackgroundTask<R, P> execute(Executor executor) throws IllegalStateException {
+
+		synchronized (this) {
+			if (future != null) {
+				throw new IllegalStateException("Task already executed");
+			}
+			future = new FutureTask<R>(this::compute) {
+				@Override
+				protected void done() {
+
+					dispatcher.post(completionKey, BackgroundTask.this::complete);
+				}
+			};
+		}
+		if (!disabledComponents.isEmpty()) {
+			if (EventQueue.isDispatchThread()) {
+				disableComponents();
+			} else {
+				dispatcher.post(new Object(), this::disableComponents);
+			}
+		}
+		executor.execute(future);
+		return this;
+	}
+
+	/**
+	 * Called on the EDT if the computation has thrown an exception. The default implementation passes it
+	 * to the uncaught exception handler of the EDT.
+	 * 
+	 * @param e		the exception
+	 */
+	protected void failed(Throwable e) {
+
+		Thread thread = Thread.currentThread();
+		thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+	}
+
+	/**
+	 * Called on the EDT after the task, after <code>succeeded()</code>, <code>failed()</code>
+	 * or <code>cancelled()</code> and after restoring the disabled components.
+	 */
+	protected void finished() {
+
+	}
+
+	/**
+	 * Waits for the result, see <code>Future.get()</code>.
+	 * 
+	 * @return the result
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws ExecutionException if the computation has thrown an exception
+	 * @throws CancellationException if the task has been cancelled
+	 * @throws RuntimeException if the current thread is the event dispatching thread, or the task
+	 * 		has not been executed
+	 */
+	@Override
+	public R get() throws InterruptedException, ExecutionException {
+
+		return startedFuture().get();
+	}
+
+	/**
+	 * Waits for the result at most the given time, see <code>Future.get()</code>.
+	 * 
+	 * @param timeout		the maximum time to wait
+	 * @param unit			the unit of the timeout
+	 * @return the result
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws ExecutionException if the computation has thrown an exception
+	 * @throws TimeoutException if the time has elapsed
+	 * @throws CancellationException if the task has been cancelled
+	 * @throws RuntimeException if the current thread is the event dispatching thread, or the task
+	 * 		has not been executed
+	 */
+	@Override
+	public R get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+
+		return startedFuture().get(timeout, unit);
+	}
+
+	/**
+	 * Returns the latest progress.
+	 * 
+	 * @return the progress, 0 to 100
+	 */
+	public int getProgress() {
+
+		return progress;
+	}
+
+	/**
+	 * Returns true if the task has been cancelled.
+	 * 
+	 * @return true if cancelled
+	 */
+	@Override
+	public boolean isCancelled() {
+
+		FutureTask<R> task = future;
+		return task != null && task.isCancelled();
+	}
+
+	/**
+	 * Returns true if the task has completed, normally, by an exception or by cancellation.
+	 * 
+	 * @return true if done
+	 */
+	@Override
+	public boolean isDone() {
+
+		FutureTask<R> task = future;
+		return task != null && task.isDone();
+	}
+
+	/**
+	 * Called on the EDT with a batch of partial results, all partial results published since the last batch.
+	 * 
+	 * @param chunks		the partial results in the order of publishing
+	 */
+	protected void process(List<P> chunks) {
+
+	}
+
+	/**
+	 * Called on the EDT with the latest progress.
+	 * 
+	 * @param progress		the progress, 0 to 100
+	 */
+	protected void progressChanged(int progress) {
+
+	}
+
+	/**
+	 * Publishes partial results, called by <code>compute()</code>. They are passed to <code>process()</code>
+	 * on the EDT in batches. Discarded if the task has been cancelled.
+	 * 
+	 * @param chunks		the partial results
+	 */
+	@SafeVarargs
+	protected final void publish(P... chunks) {
+
+		if (isCancelled()) {
+			return;
+		}
+		List<P> list = new ArrayList<>(chunks.length);
+		for (P chunk : chunks) {
+			list.add(chunk);
+		}
+		// cancel() may post the completion after the check above, a batch after it is discarded
+		dispatcher.post(chunksKey, list, (pending, more) -> {
+			pending.addAll(more);
+			return pending;
+		}, batch -> {
+			if (!completed) {
+				process(batch);
+			}
+		});
+	}
+
+	/**
+	 * Sets the progress, called by <code>compute()</code>. <code>progressChanged()</code> is called on the EDT
+	 * with the latest progress.
+	 * 
+	 * @param progress		the progress, 0 to 100
+	 * @throws IllegalArgumentException if the progress is not within 0 and 100
+	 */
+	protected final void setProgress(int progress) throws IllegalArgumentException {
+
+		if (progress < 0 || progress > 100) {
+			throw new IllegalArgumentException("Invalid progress: " + progress);
+		}
+		if (this.progress == progress || isCancelled()) {
+			return;
+		}
+		this.progress = progress;
+		dispatcher.post(progressKey, progress, latest -> {
+			if (!completed) {
+				progressChanged(latest);
+			}
+		});
+	}
+
+	/**
+	 * Returns the future of an executed task, checks that it is not called on the EDT.
+	 * 
+	 * @return the future
+	 * @throws RuntimeException if the current thread is the event dispatching thread, or the task
+	 * 		has not been executed
+	 */
+	private FutureTask<R> startedFuture() {
+
+		if (EventQueue.isDispatchThread()) {
+			Guards.fired("BackgroundTask.get");
+			throw new RuntimeException("Do not call this method from the event dispatch thread!");
+		}
+		FutureTask<R> task = future;
+		if (task == null) {
+			throw new RuntimeException("Task not executed");
+		}
+		return task;
+	}
+
+	/**
+	 * Called on the EDT with the result of a successful computation.
+	 * 
+	 * @param result		the result
+	 */
+	protected void succeeded(R result) {
+
+	}
+
+	/**
+	 * The holder of the executor of tasks, created on first use.
+	 */
+	private static class ExecutorHolder {
+
+		/** the executor of tasks: virtual threads, or daemon threads before Java 21 */
+		private static final ExecutorService EXECUTOR = Util.newThreadPerTaskExecutor();
+	}
+}
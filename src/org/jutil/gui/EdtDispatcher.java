@@ -0,0 +1,466 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil.gui;
+
+import java.awt.*;
+import java.time.*;
+import java.util.*;
+import java.util.function.*;
+
+import javax.swing.*;
+
+/**
+ * Coalesces updates of the GUI from any thread and applies them on the event dispatch thread (EDT) once per tick,
+ * instead of posting a <code>Runnable</code> per update by <code>SwingUtilities.invokeLater()</code>
+ * or <code>invokeAndWait()</code>.<br/>
+ * Updates are keyed by their target (e.g. a label or a progress bar): only the latest value per key
+ * is applied (or the values are merged by a function), therefore a thread pushing thousands of updates
+ * per second causes at most one event per tick. Updates are applied in the order of the first
+ * pending update of each key. The EDT is only woken up if there are pending updates.
+ * <pre>
+ * Examples:
+ * 
+ * 		EdtDispatcher dispatcher = EdtDispatcher.getDefault();
+ * 		dispatcher.post(statusLabel, "Processed " + count, statusLabel::setText);	// fire and forget
+ * 		dispatcher.post(logArea, line + "\n", String::concat, logArea::append);		// merged values
+ * 		dispatcher.postAndWait(table, () -&gt; model.fireTableDataChanged());			// blocking
+ * 		System.out.println(dispatcher.getStatistics());
+ * </pre>
+ */
+public class EdtDispatcher implements AutoCloseable {
+
+	/** the default time between two ticks, about one frame at 60 Hz */
+	public static final Duration DEFAULT_INTERVAL = Duration.ofMillis(16);
+
+	/** the lock of the pending updates and the statistics */
+	private final Object lock = new Object();
+	/** the timer of the ticks, one-shot, started by the first pending update */
+	private final javax.swing.Timer timer;
+	/** the pending updates by key, in the order of their first post */
+	private Map<Object, Update> pending = new LinkedHashMap<>();
+	/** true if a tick is scheduled */
+	private boolean scheduled;
+	/** true after closing */
+	private boolean closed;
+	/** the number of started ticks */
+	private long startedTicks;
+	/** the number of completed ticks */
+	private long completedTicks;
+	/** the number of posted updates */
+	private long postedCount;
+	/** the number of updates replaced or merged by a later one */
+	private long coalescedCount;
+	/** the number of applied updates */
+	private long appliedCount;
+	/** the maximum number of pending updates */
+	private int maxPendingCount;
+	/** the maximum duration of a tick in nanoseconds */
+	private long maxTickNanos;
+
+	/**
+	 * Construction of a dispatcher with the default interval of {@link #DEFAULT_INTERVAL}.
+	 */
+	public EdtDispatcher() {
+
+		this(DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * Construction of a dispatcher.
+	 * 
+	 * @param interval		the maximum delay of an update, the time between two ticks
+	 * @throws IllegalArgumentException if the interval is negative or longer than <code>Integer.MAX_VALUE</code> milliseconds
+	 */
+	public EdtDispatcher(Duration interval) throws IllegalArgumentException {
+
+		if (interval.isNegative() || interval.toMillis() > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid interval: " + interval);
+		}
+		timer = new javax.swing.Timer((int) interval.toMillis(), event -> tick());
+		timer.setRepeats(false);
+		// the updates are coalesced here: a coalescing timer drops a fire queued during a long tick
+		timer.setCoalesce(false);
+	}
+
+	/**
+	 * Stops the dispatcher, pending updates are applied by a last tick.
+	 * Posting afterwards throws an <code>IllegalStateException</code>.
+	 */
+	@Override
+	public void close() {
+
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		timer.stop();
+		EventQueue.invokeLater(this::tick);
+	}
+
+	/**
+	 * Adds an update to the pending ones, schedules a tick if it is the first one.
+	 * 
+	 * @param <V>			the type of the value
+	 * @param key			the key
+	 * @param value			the value
+	 * @param merger		the function merging the pending value and the new one, or null
+	 * @param action		the action applying the value
+	 * @return the number of the tick applying the update
+	 * @throws IllegalStateException if the dispatcher is closed
+	 */
+	@SuppressWarnings("unchecked")
+	private <V> long enqueue(Object key, V value, BinaryOperator<V> merger, Consumer<? super V> action)
+			throws IllegalStateException {
+
+		boolean schedule;
+		long tick;
+		synchronized (lock) {
+			if (closed) {
+				throw new IllegalStateException("EdtDispatcher closed");
+			}
+			postedCount++;
+			Update update = pending.get(key);
+			if (update == null) {
+				pending.put(key, new Update(value, (Consumer<Object>) action));
+				maxPendingCount = Math.max(maxPendingCount, pending.size());
+			} else {
+				update.value = merger == null ? value : merger.apply((V) update.value, value);
+				update.action = (Consumer<Object>) action;
+				coalescedCount++;
+			}
+			// the pending updates are taken by the next tick started
+			tick = startedTicks + 1;
+			schedule = !scheduled;
+			scheduled = true;
+		}
+		if (schedule) {
+			timer.restart();
+		}
+		return tick;
+	}
+
+	/**
+	 * Applies the pending updates now if called on the EDT, otherwise schedules a tick immediately.
+	 */
+	public void flush() {
+
+		if (EventQueue.isDispatchThread()) {
+			tick();
+		} else {
+			EventQueue.invokeLater(this::tick);
+		}
+	}
+
+	/**
+	 * Returns the dispatcher shared by the application, with the default interval.
+	 * 
+	 * @return the dispatcher
+	 */
+	public static EdtDispatcher getDefault() {
+
+		return DefaultHolder.DISPATCHER;
+	}
+
+	/**
+	 * Returns the current statistics.
+	 * 
+	 * @return the statistics
+	 */
+	public Statistics getStatistics() {
+
+		synchronized (lock) {
+			return new Statistics(pending.size(), maxPendingCount, postedCount, coalescedCount, appliedCount,
+					completedTicks, maxTickNanos);
+		}
+	}
+
+	/**
+	 * Posts an update: the action is called with the latest value of the key on the EDT at the next tick.
+	 * Fire and forget, returns immediately.
+	 * 
+	 * @param <V>			the type of the value
+	 * @param key			the key, usually the target of the update like a component
+	 * @param value			the value
+	 * @param action		the action applying the value, replacing a pending action of the key
+	 * @throws IllegalStateException if the dispatcher is closed
+	 */
+	public <V> void post(Object key, V value, Consumer<? super V> action) throws IllegalStateException {
+
+		post(key, value, null, action);
+	}
+
+	/**
+	 * Posts an update merged with the pending value of the key: the action is called with the merged value
+	 * on the EDT at the next tick. Fire and forget, returns immediately.
+	 * 
+	 * @param <V>			the type of the value
+	 * @param key			the key, usually the target of the update like a component
+	 * @param value			the value
+	 * @param merger		the function merging the pending value and the new one, called with the lock held,
+	 * 						or null to replace the pending value
+	 * @param action		the action applying the value, replacing a pending action of the key
+	 * @throws IllegalStateException if the dispatcher is closed
+	 */
+	public <V> void post(Object key, V value, BinaryOperator<V> merger, Consumer<? super V> action)
+			throws IllegalStateException {
+
+		enqueue(key, value, merger, action);
+	}
+
+	/**
+	 * Posts an action, replacing a pending action of the key, called on the EDT at the next tick.
+	 * Fire and forget, returns immediately.
+	 * 
+	 * @param key			the key, usually the target of the update like a component
+	 * @param action		the action
+	 * @throws IllegalStateException if the dispatcher is closed
+	 */
+	public void post(Object key, Runnable action) throws IllegalStateException {
+
+		post(key, action, null, Runnable::run);
+	}
+
+	/**
+	 * Posts an action like <code>post()</code> and waits until it (or a later action of the key) has been applied.
+	 * On the EDT, the pending updates are applied immediately.
+	 * 
+	 * @param key			the key, usually the target of the update like a component
+	 * @param action		the action
+	 * @throws IllegalStateException if the dispatcher is closed
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void postAndWait(Object key, Runnable action) throws IllegalStateException, InterruptedException {
+
+		postAndWait(key, action, null, Runnable::run);
+	}
+
+	/**
+	 * Posts an update like <code>post()</code> and waits until it (or a later update of the key) has been applied.
+	 * On the EDT, the pending updates are applied immediately.
+	 * 
+	 * @param <V>			the type of the value
+	 * @param key			the key, usually the target of the update like a component
+	 * @param value			the value
+	 * @param merger		the function merging the pending value and the new one, or null to replace it
+	 * @param action		the action applying the value
+	 * @throws IllegalStateException if the dispatcher is closed
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public <V> void postAndWait(Object key, V value, BinaryOperator<V> merger, Consumer<? super V> action)
+			throws IllegalStateException, InterruptedException {
+
+		long tick = enqueue(key, value, merger, action);
+		if (EventQueue.isDispatchThread()) {
+			tick();
+			return;
+		}
+		synchronized (lock) {
+			while (completedTicks < tick) {
+				lock.wait();
+			}
+		}
+	}
+
+	/**
+	 * Applies the pending updates on the EDT.
+	 */
+	private void tick() {
+
+		long start = System.nanoTime();
+		Map<Object, Update> updates;
+		synchronized (lock) {
+			updates = pending;
+			pending = new LinkedHashMap<>();
+			scheduled = false;
+			startedTicks++;
+		}
+		try {
+			for (Update update : updates.values()) {
+				try {
+					update.action.accept(update.value);
+				} catch (RuntimeException e) {
+					// the other updates are applied anyway
+					Thread thread = Thread.currentThread();
+					thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+				}
+			}
+		} finally {
+			synchronized (lock) {
+				completedTicks++;
+				appliedCount += updates.size();
+				maxTickNanos = Math.max(maxTickNanos, System.nanoTime() - start);
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * The holder of the shared dispatcher, created on first use.
+	 */
+	private static class DefaultHolder {
+
+		/** the shared dispatcher */
+		private static final EdtDispatcher DISPATCHER = new EdtDispatcher();
+	}
+
+	/**
+	 * The statistics of a dispatcher, immutable.
+	 */
+	public static class Statistics {
+
+		/** the number of pending updates */
+		private final int pendingCount;
+		/** the maximum number of pending updates */
+		private final int maxPendingCount;
+		/** the number of posted updates */
+		private final long postedCount;
+		/** the number of updates replaced or merged by a later one */
+		private final long coalescedCount;
+		/** the number of applied updates */
+		private final long appliedCount;
+		/** the number of ticks */
+		private final long tickCount;
+		/** the maximum duration of a tick in nanoseconds */
+		private final long maxTickNanos;
+
+		/**
+		 * Construction of statistics.
+		 * 
+		 * @param pendingCount			the number of pending updates
+		 * @param maxPendingCount		the maximum number of pending updates
+		 * @param postedCount			the number of posted updates
+		 * @param coalescedCount		the number of coalesced updates
+		 * @param appliedCount			the number of applied updates
+		 * @param tickCount				the number of ticks
+		 * @param maxTickNanos			the maximum duration of a tick in nanoseconds
+		 */
+		private Statistics(int pendingCount, int maxPendingCount, long postedCount, long coalescedCount,
+				long appliedCount, long tickCount, long maxTickNanos) {
+
+			this.pendingCount = pendingCount;
+			this.maxPendingCount = maxPendingCount;
+			this.postedCount = postedCount;
+			this.coalescedCount = coalescedCount;
+			this.appliedCount = appliedCount;
+			this.tickCount = tickCount;
+			this.maxTickNanos = maxTickNanos;
+		}
+
+		/**
+		 * Returns the number of applied updates.
+		 * 
+		 * @return the number of applied updates
+		 */
+		public long getAppliedCount() {
+
+			return appliedCount;
+		}
+
+		/**
+		 * Returns the number of updates replaced or merged by a later update of the same key, never applied.
+		 * 
+		 * @return the number of coalesced updates
+		 */
+		public long getCoalescedCount() {
+
+			return coalescedCount;
+		}
+
+		/**
+		 * Returns the maximum number of pending updates (keys), the maximum queue depth.
+		 * 
+		 * @return the maximum number of pending updates
+		 */
+		public int getMaxPendingCount() {
+
+			return maxPendingCount;
+		}
+
+		/**
+		 * Returns the maximum duration of a tick, applying all its updates.
+		 * 
+		 * @return the maximum duration of a tick
+		 */
+		public Duration getMaxTickDuration() {
+
+			return Duration.ofNanos(maxTickNanos);
+		}
+
+		/**
+		 * Returns the number of pending updates (keys), the current queue depth.
+		 * 
+		 * @return the number of pending updates
+		 */
+		public int getPendingCount() {
+
+			return pendingCount;
+		}
+
+		/**
+		 * Returns the number of posted updates.
+		 * 
+		 * @return the number of posted updates
+		 */
+		public long getPostedCount() {
+
+			return postedCount;
+		}
+
+		/**
+		 * Returns the number of ticks, the number of events on the EDT.
+		 * 
+		 * @return the number of ticks
+		 */
+		public long getTickCount() {
+
+			return tickCount;
+		}
+
+		@Override
+		public String toString() {
+
+			return "posted=" + postedCount + " coalesced=" + coalescedCount + " applied=" + appliedCount
+					+ " ticks=" + tickCount + " pending=" + pendingCount + " maxPending=" + maxPendingCount
+					+ " maxTick=" + maxTickNanos / 1000 + "us";
+		}
+	}
+
+	/**
+	 * A pending update of a key.
+	 */
+	private static class Update {
+
+		/** the value */
+		private Object value;
+		/** the action applying the value */
+		private Consumer<Object> action;
+
+		/**
+		 * Construction of an update.
+		 * 
+		 * @param value			the value
+		 * @param action		the action applying the value
+		 */
+		private Update(Object value, Consumer<Object> action) {
+
+			this.value = value;
+			this.action = action;
+		}
+	}
+}
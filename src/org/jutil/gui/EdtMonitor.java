@@ -0,0 +1,302 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil.gui;
+
+import java.awt.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+import org.jutil.*;
+import org.jutil.app.*;
+
+/**
+ * An opt-in monitor of the event dispatch thread (EDT), measuring UI freezes without an external profiler:
+ * it pushes an <code>EventQueue</code> timing the dispatch of each event into a {@link LatencyHistogram}.
+ * A watchdog thread samples the stack of the EDT once an event takes longer than a threshold
+ * (a stall) and passes it to a listener, by default it is printed to <code>System.err</code>.<br/>
+ * Events pumping nested events (like modal dialogs) are not measured, their nested events are.
+ * The overhead per event is lock-free and without allocation: two <code>System.nanoTime()</code> calls,
+ * three volatile writes and the recording into the histogram (an <code>AtomicLongArray</code> increment,
+ * two <code>LongAdder</code> adds and a compare-and-set for a new maximum).<br/>
+ * Independent of any monitor, guards like the EDT check of {@link Gui#blockingConfirmDlg(String, String)}
+ * count their violations by {@link Guards}, see {@link #getGuardCounts()}.
+ * <pre>
+ * Example:
+ * 
+ * 		EdtMonitor monitor = new EdtMonitor(Duration.ofMillis(200)).install();
+ * 		...
+ * 		System.out.println(monitor.getHistogram());		// "count=51234 mean=0.210ms p50=... max=812.000ms"
+ * 		System.out.println(monitor.getStallCount() + " stalls, guards: " + EdtMonitor.getGuardCounts());
+ * 		monitor.close();
+ * </pre>
+ */
+public class EdtMonitor implements AutoCloseable {
+
+	/** the stall threshold in nanoseconds */
+	private final long thresholdNanos;
+	/** the histogram of the dispatch times */
+	private final LatencyHistogram histogram = new LatencyHistogram();
+	/** the number of stalls */
+	private final LongAdder stallCount = new LongAdder();
+	/** the listener of stalls */
+	private volatile StallListener stallListener = EdtMonitor::printStall;
+	/** the pushed event queue, or null if not installed */
+	private MonitoredEventQueue queue;
+	/** the watchdog thread, or null if not installed */
+	private Thread watchdog;
+	/** the EDT */
+	private volatile Thread edt;
+	/** the start of the dispatch of the current event, 0 if none is watched */
+	private volatile long dispatchStart;
+
+	/**
+	 * Construction of a monitor, not yet installed.
+	 * 
+	 * @param stallThreshold		the dispatch time of an event considered a stall, like 200 milliseconds
+	 * @throws IllegalArgumentException if the threshold is not positive
+	 */
+	public EdtMonitor(Duration stallThreshold) throws IllegalArgumentException {
+
+		if (stallThreshold.isNegative() || stallThreshold.isZero()) {
+			throw new IllegalArgumentException("Invalid stall threshold: " + stallThreshold);
+		}
+		thresholdNanos = stallThreshold.toNanos();
+	}
+
+	/**
+	 * Uninstalls the monitor, see {@link #uninstall()}.
+	 */
+	@Override
+	public void close() {
+
+		uninstall();
+	}
+
+	/**
+	 * Returns the counts of the guards which have fired, like calling a blocking method on the EDT,
+	 * see {@link Guards#getCounts()}.
+	 * 
+	 * @return the counts by name of the guard, sorted by name
+	 */
+	public static Map<String, Long> getGuardCounts() {
+
+		return Guards.getCounts();
+	}
+
+	/**
+	 * Returns the histogram of the dispatch times of the events.
+	 * 
+	 * @return the histogram
+	 */
+	public LatencyHistogram getHistogram() {
+
+		return histogram;
+	}
+
+	/**
+	 * Returns the number of stalls, events exceeding the threshold.
+	 * 
+	 * @return the number of stalls
+	 */
+	public long getStallCount() {
+
+		return stallCount.sum();
+	}
+
+	/**
+	 * Installs the monitor: pushes its event queue and starts the watchdog.
+	 * 
+	 * @return this monitor
+	 * @throws IllegalStateException if the monitor is already installed
+	 */
+	public synchronized EdtMonitor install() throws IllegalStateException {
+
+		if (queue != null) {
+			throw new IllegalStateException("EdtMonitor already installed");
+		}
+		queue = new MonitoredEventQueue();
+		Toolkit.getDefaultToolkit().getSystemEventQueue().push(queue);
+		watchdog = new Thread(this::watch, "EdtMonitor");
+		watchdog.setDaemon(true);
+		watchdog.start();
+		return this;
+	}
+
+	/**
+	 * Prints a stall to <code>System.err</code>, the default listener.
+	 * 
+	 * @param duration		the dispatch time so far
+	 * @param stack			the stack of the EDT
+	 */
+	private static void printStall(Duration duration, StackTraceElement[] stack) {
+
+		StringBuilder sb = new StringBuilder();
+		TimeStamp.DATE_TIME_MILLIS.append(sb).append(" EDT stalled for ").append(duration.toMillis()).append(" ms:");
+		for (StackTraceElement element : stack) {
+			sb.append(System.lineSeparator()).append("\tat ").append(element);
+		}
+		System.err.println(sb);
+	}
+
+	/**
+	 * Sets the listener of stalls.
+	 * 
+	 * @param stallListener		the listener, called by the watchdog thread, the default prints to <code>System.err</code>
+	 * @return this monitor
+	 */
+	public EdtMonitor stallListener(StallListener stallListener) {
+
+		this.stallListener = stallListener;
+		return this;
+	}
+
+	/**
+	 * Returns a summary: the histogram, the stalls and the guard counts.
+	 */
+	@Override
+	public String toString() {
+
+		return "EDT dispatch: " + histogram + ", stalls=" + getStallCount() + ", guards=" + getGuardCounts();
+	}
+
+	/**
+	 * Uninstalls the monitor: pops its event queue and stops the watchdog. If another event queue has been
+	 * pushed on top of it meanwhile, it cannot be popped without popping the other one: it stays in place
+	 * and passes the events through without measuring them. The histogram and the counts are kept.
+	 */
+	public synchronized void uninstall() {
+
+		if (queue == null) {
+			return;
+		}
+		queue.uninstall();
+		queue = null;
+		watchdog.interrupt();
+		watchdog = null;
+	}
+
+	/**
+	 * The loop of the watchdog: checks the current event at half of the threshold,
+	 * samples the stack of the EDT once per stalled event.
+	 */
+	private void watch() {
+
+		long reportedStart = 0;
+		while (!Thread.currentThread().isInterrupted()) {
+			LockSupport.parkNanos(thresholdNanos / 2);
+			long start = dispatchStart;
+			Thread thread = edt;
+			if (start == 0 || start == reportedStart || thread == null) {
+				continue;
+			}
+			long nanos = System.nanoTime() - start;
+			if (nanos < thresholdNanos) {
+				continue;
+			}
+			StackTraceElement[] stack = thread.getStackTrace();
+			if (dispatchStart != start) {
+				// the event has finished meanwhile, the stack is of another one
+				continue;
+			}
+			reportedStart = start;
+			try {
+				stallListener.stalled(Duration.ofNanos(nanos), stack);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * The event queue timing the dispatch of the events.
+	 */
+	private class MonitoredEventQueue extends EventQueue {
+
+		/** the depth of nested dispatching, accessed by the EDT only */
+		private int depth;
+		/** true if the event of a depth has dispatched nested events, accessed by the EDT only */
+		private boolean[] pumping = new boolean[8];
+		/** true after uninstalling while another queue was on top, the events are not measured anymore */
+		private volatile boolean passThrough;
+
+		@Override
+		protected void dispatchEvent(AWTEvent event) {
+
+			if (passThrough) {
+				super.dispatchEvent(event);
+				return;
+			}
+			if (depth > 0) {
+				pumping[depth - 1] = true;
+			}
+			if (depth == pumping.length) {
+				pumping = Arrays.copyOf(pumping, 2 * depth);
+			}
+			pumping[depth++] = false;
+			edt = Thread.currentThread();
+			long start = System.nanoTime();
+			dispatchStart = start;
+			try {
+				super.dispatchEvent(event);
+			} finally {
+				dispatchStart = 0;
+				depth--;
+				if (!pumping[depth]) {
+					long nanos = System.nanoTime() - start;
+					histogram.record(nanos);
+					if (nanos >= thresholdNanos) {
+						stallCount.increment();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Pops this queue if it is the top one, the events are dispatched by the previous one again.
+		 * Otherwise it passes the events through, <code>pop()</code> would pop the top queue instead of this one.
+		 */
+		private void uninstall() {
+
+			if (Toolkit.getDefaultToolkit().getSystemEventQueue() != this) {
+				passThrough = true;
+				return;
+			}
+			try {
+				pop();
+			} catch (EmptyStackException e) {
+				// not pushed or already popped
+			}
+		}
+	}
+
+	/**
+	 * The listener of stalls of the EDT.
+	 */
+	@FunctionalInterface
+	public interface StallListener {
+
+		/**
+		 * Called by the watchdog thread for an event exceeding the threshold, once per event.
+		 * 
+		 * @param duration		the dispatch time so far
+		 * @param stack			the stack of the EDT, sampled at this time
+		 */
+		void stalled(Duration duration, StackTraceElement[] stack);
+	}
+}
@@ -17,9 +17,14 @@
 package org.jutil.gui;
 
 import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.function.*;
 
 import javax.swing.*;
 
+import org.jutil.app.*;
+
 /**
  * Utility class for the GUI (Graphical User Interface), supporting a project's GUI with several static methods.
  */
@@ -35,6 +40,7 @@ public class Gui {
 	/**
 	 * Blocks the current thread until a information message dialog is confirmed.
 	 * Uses SwingUtilities.invokeAndWait() and JOptionPane.showMessageDialog() to do this.
+	 * A call on the event dispatch thread is counted by {@link Guards#fired(String)}.
 	 *
 	 * @param message		the message
 	 * @param title			the title of the dialog
@@ -43,6 +49,7 @@ public class Gui {
 	public static void blockingConfirmDlg(final String message, final String title) {
 
 		if (SwingUtilities.isEventDispatchThread()) {
+			Guards.fired("Gui.blockingConfirmDlg");
 			throw new RuntimeException("Do not call this method from the event dispatch thread!");
 		}
 		try {
@@ -60,6 +67,7 @@ public class Gui {
 	/**
 	 * Blocks the current thread until a message dialog is confirmed.
 	 * Uses SwingUtilities.invokeAndWait() and JOptionPane.showMessageDialog() to do this.
+	 * A call on the event dispatch thread is counted by {@link Guards#fired(String)}.
 	 *
 	 * @param message		the message
 	 * @param title			the title of the dialog
@@ -69,6 +77,7 @@ public class Gui {
 	public static void blockingConfirmDlg(final String message, final String title, int messageType) {
 
 		if (SwingUtilities.isEventDispatchThread()) {
+			Guards.fired("Gui.blockingConfirmDlg");
 			throw new RuntimeException("Do not call this method from the event dispatch thread!");
 		}
 		try {
@@ -99,19 +108,57 @@ public class Gui {
 	
 	/**
 	 * Enable/disable all components of a container recursively.
+	 * See {@link #enableComponents(Container, boolean, Predicate)}, which also returns the prior states.
 	 * 
 	 * @param container		the container of the components to enable or disable
 	 * @param enable		true to enable all components, false otherwise
 	 */
 	public static void enableComponents(Container container, boolean enable) {
 
-		Component[] components = container.getComponents();
-		for (Component component: components) {
-			component.setEnabled(enable);
+		enableComponents(container, enable, null);
+	}
+
+	/**
+	 * Enable/disable all components of a container (not the container itself) and their children,
+	 * except skipped subtrees. Call it on the event dispatch thread.<br/>
+	 * The tree is traversed iteratively (no recursion depth limit), <code>setEnabled()</code> is only called
+	 * for components changing their state, therefore unchanged components fire no events. The repaint requests
+	 * of the changed components are merged by the <code>RepaintManager</code> into one paint of the container.
+	 * <pre>
+	 * Example:
+	 * 
+	 * 		Gui.EnabledStates states = Gui.enableComponents(form, false, c -&gt; c == cancelButton);
+	 * 		...
+	 * 		states.restore();				// exactly the prior states
+	 * </pre>
+	 * 
+	 * @param container		the container of the components to enable or disable
+	 * @param enable		true to enable all components, false otherwise
+	 * @param skip			the predicate of components to skip with their children, or null
+	 * @return the prior enabled states of the changed components, to restore them
+	 */
+	public static EnabledStates enableComponents(Container container, boolean enable, Predicate<Component> skip) {
+
+		EnabledStates states = new EnabledStates(container, !enable);
+		ArrayDeque<Component> stack = new ArrayDeque<>();
+		pushComponents(stack, container);
+		while (!stack.isEmpty()) {
+			Component component = stack.pop();
+			if (skip != null && skip.test(component)) {
+				continue;
+			}
+			if (component.isEnabled() != enable) {
+				component.setEnabled(enable);
+				states.changed.add(component);
+			}
 			if (component instanceof Container) {
-				enableComponents((Container) component, enable);
+				pushComponents(stack, (Container) component);
 			}
 		}
+		if (!states.changed.isEmpty()) {
+			container.repaint();
+		}
+		return states;
 	}
 	
 	/**
@@ -138,6 +185,20 @@ public class Gui {
 		JOptionPane.showMessageDialog(parent, message, title, JOptionPane.INFORMATION_MESSAGE);
 	}
 	
+	/**
+	 * Pushes the components of a container onto a stack, in reverse order to pop them in order.
+	 * 
+	 * @param stack			the stack
+	 * @param container		the container
+	 */
+	private static void pushComponents(ArrayDeque<Component> stack, Container container) {
+
+		Component[] components = container.getComponents();
+		for (int i = components.length - 1; i >= 0; i--) {
+			stack.push(components[i]);
+		}
+	}
+	
 	/**
 	 * Convenience method (short name): show a warning dialog.
 	 * 
@@ -149,4 +210,57 @@ public class Gui {
 		
 		JOptionPane.showMessageDialog(parent, message, title, JOptionPane.WARNING_MESSAGE);
 	}
+
+	/**
+	 * The prior enabled states of the components changed by <code>enableComponents()</code>.
+	 */
+	public static class EnabledStates {
+
+		/** the container */
+		private final Container container;
+		/** the prior enabled state of the changed components */
+		private final boolean priorState;
+		/** the changed components */
+		private final List<Component> changed = new ArrayList<>();
+
+		/**
+		 * Construction of the prior states.
+		 * 
+		 * @param container			the container
+		 * @param priorState		the prior enabled state of the changed components
+		 */
+		private EnabledStates(Container container, boolean priorState) {
+
+			this.container = container;
+			this.priorState = priorState;
+		}
+
+		/**
+		 * Returns the number of changed components.
+		 * 
+		 * @return the number of changed components
+		 */
+		public int getChangedCount() {
+
+			return changed.size();
+		}
+
+		/**
+		 * Restores the prior enabled states of the changed components, with one repaint of the container.
+		 * Call it on the event dispatch thread.
+		 */
+		public void restore() {
+
+			boolean repaint = false;
+			for (Component component : changed) {
+				if (component.isEnabled() != priorState) {
+					component.setEnabled(priorState);
+					repaint = true;
+				}
+			}
+			if (repaint) {
+				container.repaint();
+			}
+		}
+	}
 }
@@ -0,0 +1,821 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil.io;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * A streaming parser of delimited records like CSV (RFC 4180) or TSV, without creating objects per field
+ * or per record: the fields of a record are views into the buffer of the parser, passed to a consumer
+ * as reusable <code>CharSequence</code>s or parsed directly into <code>int</code>, <code>long</code>
+ * or <code>double</code>. A record and its fields are only valid during the call of the consumer,
+ * use <code>getString()</code> or <code>toString()</code> to keep a field.<br/>
+ * Quoting follows RFC 4180: a field starting with a quote may contain delimiters, line breaks and
+ * doubled quotes as escaped quotes. Records end with LF, CRLF or CR. Characters following the closing quote
+ * of a field are appended to it (lenient), an unterminated quoted field is an error.<br/>
+ * The input is a <code>Reader</code>, an <code>InputStream</code>, a <code>ByteBuffer</code>
+ * or a memory-mapped file.
+ * <pre>
+ * Examples:
+ * 
+ * 		long[] sum = new long[1];
+ * 		new CsvParser().parse(Path.of("orders.csv"), StandardCharsets.UTF_8, record -&gt; {
+ * 			if (record.getNumber() &gt; 1) {								// skip the header
+ * 				sum[0] += record.getLong(2);
+ * 			}
+ * 		});
+ * 
+ * 		new CsvParser('\t').parse(reader, record -&gt; index.put(record.getString(0), record.getInt(1)));
+ * </pre>
+ */
+public class CsvParser {
+
+	/** the initial size of the buffer in chars, it grows for longer records */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/** the maximum size of a mapped segment of a file */
+	private static final long SEGMENT_SIZE = 1L << 30;
+	/** powers of ten exactly representable as double */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/** the delimiter of fields */
+	private final char delimiter;
+	/** the quote character */
+	private char quote = '"';
+	/** true if quoted fields are recognized */
+	private boolean quoting = true;
+	/** true to skip empty lines */
+	private boolean skipEmptyLines = true;
+
+	/**
+	 * Construction of a CSV parser: comma delimiter, double quotes.
+	 */
+	public CsvParser() {
+
+		this(',');
+	}
+
+	/**
+	 * Construction of a parser with a delimiter, like '\t' for TSV or ';'.
+	 * 
+	 * @param delimiter		the delimiter of fields
+	 * @throws IllegalArgumentException if the delimiter is a line break
+	 */
+	public CsvParser(char delimiter) throws IllegalArgumentException {
+
+		if (delimiter == '\n' || delimiter == '\r') {
+			throw new IllegalArgumentException("Invalid delimiter: line break");
+		}
+		this.delimiter = delimiter;
+	}
+
+	/**
+	 * Parses delimited records from a <code>ByteBuffer</code>, from its position to its limit.
+	 * Malformed input is replaced like by an <code>InputStreamReader</code>.
+	 * 
+	 * @param buffer		the buffer, e.g. a <code>MappedByteBuffer</code>
+	 * @param charset		the charset of the bytes
+	 * @param consumer		the consumer of the records
+	 * @return the number of records
+	 * @throws IOException in case of malformed records
+	 */
+	public long parse(ByteBuffer buffer, Charset charset, Consumer<Record> consumer) throws IOException {
+
+		return new Tokenizer(new DecodingSource(buffer, charset, null, 0, 0)).parse(consumer);
+	}
+
+	/**
+	 * Parses delimited records from an <code>InputStream</code>.
+	 * 
+	 * @param in			the input stream, not closed
+	 * @param charset		the charset of the bytes
+	 * @param consumer		the consumer of the records
+	 * @return the number of records
+	 * @throws IOException in case of IO errors or malformed records
+	 */
+	public long parse(InputStream in, Charset charset, Consumer<Record> consumer) throws IOException {
+
+		return parse(new InputStreamReader(in, charset), consumer);
+	}
+
+	/**
+	 * Parses delimited records from a file, memory-mapped in segments.
+	 * 
+	 * @param file			the file
+	 * @param charset		the charset of the file
+	 * @param consumer		the consumer of the records
+	 * @return the number of records
+	 * @throws IOException in case of IO errors or malformed records
+	 */
+	public long parse(Path file, Charset charset, Consumer<Record> consumer) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			ByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, SEGMENT_SIZE));
+			return new Tokenizer(new DecodingSource(segment, charset, channel, 0, size)).parse(consumer);
+		}
+	}
+
+	/**
+	 * Parses delimited records from a <code>Reader</code>. The reader needs no buffering,
+	 * it is read in large blocks.
+	 * 
+	 * @param reader		the reader, not closed
+	 * @param consumer		the consumer of the records
+	 * @return the number of records
+	 * @throws IOException in case of IO errors or malformed records
+	 */
+	public long parse(Reader reader, Consumer<Record> consumer) throws IOException {
+
+		return new Tokenizer(reader::read).parse(consumer);
+	}
+
+	/**
+	 * Parses a decimal number like "-12.5e3" without creating objects for numbers with up to
+	 * 15 significant digits and small exponents (these are exact), other numbers and special values
+	 * like "NaN" are parsed by <code>Double.parseDouble()</code>.
+	 * 
+	 * @param chars		the characters, without white space
+	 * @return the number
+	 * @throws NumberFormatException if the characters are not a number
+	 */
+	public static double parseDouble(CharSequence chars) throws NumberFormatException {
+
+		int length = chars.length();
+		int i = 0;
+		boolean negative = false;
+		if (length > 0 && (chars.charAt(0) == '-' || chars.charAt(0) == '+')) {
+			negative = chars.charAt(0) == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int significantDigits = 0;
+		int exponent = 0;
+		int digits = 0;
+		boolean point = false;
+		for (; i < length; i++) {
+			char c = chars.charAt(i);
+			if (c >= '0' && c <= '9') {
+				digits++;
+				if (mantissa != 0 || c != '0') {
+					if (++significantDigits > 15) {
+						return Double.parseDouble(chars.toString());
+					}
+					mantissa = mantissa * 10 + (c - '0');
+				}
+				if (point) {
+					exponent--;
+				}
+			} else if (c == '.' && !point) {
+				point = true;
+			} else {
+				break;
+			}
+		}
+		if (digits == 0) {
+			return Double.parseDouble(chars.toString());
+		}
+		if (i < length) {
+			char c = chars.charAt(i++);
+			boolean negativeExponent = false;
+			if (i < length && (chars.charAt(i) == '-' || chars.charAt(i) == '+')) {
+				negativeExponent = chars.charAt(i++) == '-';
+			}
+			if (c != 'e' && c != 'E' || i == length || length - i > 3) {
+				// not an exponent, or a large one
+				return Double.parseDouble(chars.toString());
+			}
+			int exponentDigits = 0;
+			for (; i < length; i++) {
+				int digit = chars.charAt(i) - '0';
+				if (digit < 0 || digit > 9) {
+					return Double.parseDouble(chars.toString());
+				}
+				exponentDigits = exponentDigits * 10 + digit;
+			}
+			exponent += negativeExponent ? -exponentDigits : exponentDigits;
+		}
+		// the mantissa and the power of ten are exact, therefore a single rounding: the correct result
+		double value;
+		if (mantissa == 0) {
+			value = 0;
+		} else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+			value = mantissa * POWERS_OF_TEN[exponent];
+		} else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+			value = mantissa / POWERS_OF_TEN[-exponent];
+		} else {
+			return Double.parseDouble(chars.toString());
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses a decimal integer like "-42" without creating objects.
+	 * 
+	 * @param chars		the characters, without white space
+	 * @return the number
+	 * @throws NumberFormatException if the characters are not an <code>int</code>
+	 */
+	public static int parseInt(CharSequence chars) throws NumberFormatException {
+
+		long value = parseLong(chars);
+		if (value != (int) value) {
+			throw new NumberFormatException("Out of range for int: \"" + chars + "\"");
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Parses a decimal integer like "-42" without creating objects.
+	 * 
+	 * @param chars		the characters, without white space
+	 * @return the number
+	 * @throws NumberFormatException if the characters are not a <code>long</code>
+	 */
+	public static long parseLong(CharSequence chars) throws NumberFormatException {
+
+		int length = chars.length();
+		int i = 0;
+		boolean negative = false;
+		if (length > 0 && (chars.charAt(0) == '-' || chars.charAt(0) == '+')) {
+			negative = chars.charAt(0) == '-';
+			i++;
+		}
+		if (i == length) {
+			throw new NumberFormatException("Not a number: \"" + chars + "\"");
+		}
+		// accumulated negatively like Long.parseLong(), Long.MIN_VALUE has no positive counterpart
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long value = 0;
+		for (; i < length; i++) {
+			int digit = chars.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("Not a number: \"" + chars + "\"");
+			}
+			if (value < limit / 10 || value * 10 < limit + digit) {
+				throw new NumberFormatException("Out of range for long: \"" + chars + "\"");
+			}
+			value = value * 10 - digit;
+		}
+		return negative ? value : -value;
+	}
+
+	/**
+	 * Sets the quote character.
+	 * 
+	 * @param quote		the quote character, the default is '"'
+	 * @return this parser
+	 * @throws IllegalArgumentException if the quote is the delimiter or a line break
+	 */
+	public CsvParser quote(char quote) throws IllegalArgumentException {
+
+		if (quote == delimiter || quote == '\n' || quote == '\r') {
+			throw new IllegalArgumentException("Invalid quote: " + quote);
+		}
+		this.quote = quote;
+		return this;
+	}
+
+	/**
+	 * Sets whether quoted fields are recognized, e.g. not for simple TSV where quotes are plain characters.
+	 * 
+	 * @param quoting		true to recognize quoted fields, the default is true
+	 * @return this parser
+	 */
+	public CsvParser quoting(boolean quoting) {
+
+		this.quoting = quoting;
+		return this;
+	}
+
+	/**
+	 * Sets whether empty lines are skipped, otherwise they are records with one empty field.
+	 * 
+	 * @param skipEmptyLines		true to skip empty lines, the default is true
+	 * @return this parser
+	 */
+	public CsvParser skipEmptyLines(boolean skipEmptyLines) {
+
+		this.skipEmptyLines = skipEmptyLines;
+		return this;
+	}
+
+	/**
+	 * A record, reused for all records of a parse: the fields are views into the buffer of the parser,
+	 * valid only during the call of the consumer.
+	 */
+	public static class Record {
+
+		/** the buffer containing the fields */
+		private char[] buffer;
+		/** the start indices of the fields in the buffer */
+		private int[] starts = new int[16];
+		/** the end indices of the fields in the buffer */
+		private int[] ends = new int[16];
+		/** the views of the fields */
+		private Field[] fields = new Field[0];
+		/** the number of fields */
+		private int count;
+		/** the number of the record, starting with 1 */
+		private long number;
+
+		/**
+		 * Construction of a record.
+		 */
+		private Record() {
+
+		}
+
+		/**
+		 * Adds a field.
+		 * 
+		 * @param start		the start index in the buffer
+		 * @param end		the end index in the buffer
+		 */
+		private void add(int start, int end) {
+
+			if (count == starts.length) {
+				int newLength = 2 * count;
+				starts = Arrays.copyOf(starts, newLength);
+				ends = Arrays.copyOf(ends, newLength);
+			}
+			starts[count] = start;
+			ends[count] = end;
+			count++;
+		}
+
+		/**
+		 * Returns a field as reusable view, valid only during the call of the consumer.
+		 * 
+		 * @param index		the index of the field, starting with 0
+		 * @return the field
+		 * @throws IndexOutOfBoundsException if there is no such field
+		 */
+		public CharSequence field(int index) throws IndexOutOfBoundsException {
+
+			checkIndex(index);
+			if (index >= fields.length) {
+				Field[] newFields = Arrays.copyOf(fields, Math.max(starts.length, index + 1));
+				for (int i = fields.length; i < newFields.length; i++) {
+					newFields[i] = new Field(i);
+				}
+				fields = newFields;
+			}
+			return fields[index];
+		}
+
+		/**
+		 * Checks the index of a field.
+		 * 
+		 * @param index		the index of the field
+		 * @throws IndexOutOfBoundsException if there is no such field
+		 */
+		private void checkIndex(int index) throws IndexOutOfBoundsException {
+
+			if (index < 0 || index >= count) {
+				throw new IndexOutOfBoundsException("Field " + index + " of " + count + " fields in record " + number);
+			}
+		}
+
+		/**
+		 * Returns a field parsed as <code>double</code>, see {@link CsvParser#parseDouble(CharSequence)}.
+		 * 
+		 * @param index		the index of the field, starting with 0
+		 * @return the number
+		 * @throws IndexOutOfBoundsException if there is no such field
+		 * @throws NumberFormatException if the field is not a number
+		 */
+		public double getDouble(int index) throws IndexOutOfBoundsException, NumberFormatException {
+
+			return parseDouble(field(index));
+		}
+
+		/**
+		 * Returns the number of fields of the record.
+		 * 
+		 * @return the number of fields
+		 */
+		public int getFieldCount() {
+
+			return count;
+		}
+
+		/**
+		 * Returns a field parsed as <code>int</code>, see {@link CsvParser#parseInt(CharSequence)}.
+		 * 
+		 * @param index		the index of the field, starting with 0
+		 * @return the number
+		 * @throws IndexOutOfBoundsException if there is no such field
+		 * @throws NumberFormatException if the field is not an <code>int</code>
+		 */
+		public int getInt(int index) throws IndexOutOfBoundsException, NumberFormatException {
+
+			return parseInt(field(index));
+		}
+
+		/**
+		 * Returns a field parsed as <code>long</code>, see {@link CsvParser#parseLong(CharSequence)}.
+		 * 
+		 * @param index		the index of the field, starting with 0
+		 * @return the number
+		 * @throws IndexOutOfBoundsException if there is no such field
+		 * @throws NumberFormatException if the field is not a <code>long</code>
+		 */
+		public long getLong(int index) throws IndexOutOfBoundsException, NumberFormatException {
+
+			return parseLong(field(index));
+		}
+
+		/**
+		 * Returns the number of the record, starting with 1 (not the line number, a record may contain
+		 * line breaks within quotes).
+		 * 
+		 * @return the number of the record
+		 */
+		public long getNumber() {
+
+			return number;
+		}
+
+		/**
+		 * Returns a field as a new <code>String</code>.
+		 * 
+		 * @param index		the index of the field, starting with 0
+		 * @return the field
+		 * @throws IndexOutOfBoundsException if there is no such field
+		 */
+		public String getString(int index) throws IndexOutOfBoundsException {
+
+			checkIndex(index);
+			return new String(buffer, starts[index], ends[index] - starts[index]);
+		}
+
+		/**
+		 * Returns the fields separated by commas, unquoted, for debugging.
+		 */
+		@Override
+		public String toString() {
+
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < count; i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				sb.append(buffer, starts[i], ends[i] - starts[i]);
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * The reusable view of a field.
+		 */
+		private class Field implements CharSequence {
+
+			/** the index of the field */
+			private final int index;
+
+			/**
+			 * Construction of the view of a field.
+			 * 
+			 * @param index		the index of the field
+			 */
+			private Field(int index) {
+
+				this.index = index;
+			}
+
+			@Override
+			public char charAt(int i) {
+
+				if (i < 0 || i >= length()) {
+					throw new IndexOutOfBoundsException("Index " + i + " of length " + length());
+				}
+				return buffer[starts[index] + i];
+			}
+
+			@Override
+			public int length() {
+
+				return ends[index] - starts[index];
+			}
+
+			@Override
+			public CharSequence subSequence(int start, int end) {
+
+				return toString().substring(start, end);
+			}
+
+			@Override
+			public String toString() {
+
+				return new String(buffer, starts[index], length());
+			}
+		}
+	}
+
+	/**
+	 * A source of characters.
+	 */
+	@FunctionalInterface
+	private interface CharSource {
+
+		/**
+		 * Reads characters into an array, like <code>Reader.read()</code>.
+		 * 
+		 * @param chars			the array
+		 * @param offset		the index of the first character to read
+		 * @param length		the maximum number of characters
+		 * @return the number of characters read, or -1 at the end
+		 * @throws IOException in case of IO errors
+		 */
+		int read(char[] chars, int offset, int length) throws IOException;
+	}
+
+	/**
+	 * A source decoding a <code>ByteBuffer</code>, or the mapped segments of a file.
+	 */
+	private static class DecodingSource implements CharSource {
+
+		/** the decoder */
+		private final CharsetDecoder decoder;
+		/** the file channel mapping further segments, or null */
+		private final FileChannel channel;
+		/** the size of the file */
+		private final long size;
+		/** the current bytes */
+		private ByteBuffer bytes;
+		/** the position of the current bytes in the file */
+		private long position;
+		/** true after the decoder has been flushed */
+		private boolean flushed;
+
+		/**
+		 * Construction of a decoding source.
+		 * 
+		 * @param bytes			the (first) bytes
+		 * @param charset		the charset
+		 * @param channel		the file channel mapping further segments, or null
+		 * @param position		the position of the bytes in the file
+		 * @param size			the size of the file
+		 */
+		private DecodingSource(ByteBuffer bytes, Charset charset, FileChannel channel, long position, long size) {
+
+			this.bytes = bytes;
+			this.channel = channel;
+			this.position = position;
+			this.size = size;
+			decoder = charset.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+
+		@Override
+		public int read(char[] chars, int offset, int length) throws IOException {
+
+			CharBuffer out = CharBuffer.wrap(chars, offset, length);
+			while (true) {
+				boolean last = channel == null || position + bytes.limit() >= size;
+				if (!flushed) {
+					decoder.decode(bytes, out, last);
+					if (last && !bytes.hasRemaining() && out.hasRemaining()) {
+						decoder.flush(out);
+						flushed = true;
+					}
+				}
+				int count = out.position() - offset;
+				if (count > 0) {
+					return count;
+				}
+				if (last) {
+					return -1;
+				}
+				// the next segment, starting with the undecoded bytes of the current one
+				position += bytes.position();
+				bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, SEGMENT_SIZE));
+			}
+		}
+	}
+
+	/**
+	 * The state of one parse: the buffer, the current record and the positions.
+	 */
+	private class Tokenizer {
+
+		/** the source of characters */
+		private final CharSource source;
+		/** the reused record */
+		private final Record record = new Record();
+		/** the buffer */
+		private char[] buffer = new char[BUFFER_SIZE];
+		/** the index of the next character */
+		private int pos;
+		/** the end of the characters in the buffer */
+		private int limit;
+		/** the start of the current record */
+		private int recordStart;
+		/** the start of the current field */
+		private int fieldStart;
+		/** the write index of unescaping the current quoted field */
+		private int write;
+
+		/**
+		 * Construction of a tokenizer.
+		 * 
+		 * @param source		the source of characters
+		 */
+		private Tokenizer(CharSource source) {
+
+			this.source = source;
+			record.buffer = buffer;
+		}
+
+		/**
+		 * Adds the current field to the record.
+		 * 
+		 * @param end		the end of the field
+		 */
+		private void addField(int end) {
+
+			record.add(fieldStart, end);
+		}
+
+		/**
+		 * Reads more characters into the buffer, keeping the current record: it is moved to the start
+		 * of the buffer, the buffer grows if the record does not fit.
+		 * 
+		 * @return false at the end of the input
+		 * @throws IOException in case of IO errors
+		 */
+		private boolean fill() throws IOException {
+
+			if (recordStart > 0) {
+				int shift = recordStart;
+				System.arraycopy(buffer, shift, buffer, 0, limit - shift);
+				for (int i = 0; i < record.count; i++) {
+					record.starts[i] -= shift;
+					record.ends[i] -= shift;
+				}
+				pos -= shift;
+				limit -= shift;
+				fieldStart -= shift;
+				write -= shift;
+				recordStart = 0;
+			} else if (limit == buffer.length) {
+				buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+				record.buffer = buffer;
+			}
+			int count;
+			do {
+				count = source.read(buffer, limit, buffer.length - limit);
+			} while (count == 0);
+			if (count < 0) {
+				return false;
+			}
+			limit += count;
+			return true;
+		}
+
+		/**
+		 * Parses all records.
+		 * 
+		 * @param consumer		the consumer of the records
+		 * @return the number of records
+		 * @throws IOException in case of IO errors or malformed records
+		 */
+		private long parse(Consumer<Record> consumer) throws IOException {
+
+			while (true) {
+				recordStart = pos;
+				record.count = 0;
+				if (pos == limit && !fill()) {
+					return record.number;
+				}
+				char c = buffer[pos];
+				if (skipEmptyLines && (c == '\n' || c == '\r')) {
+					pos++;
+					continue;
+				}
+				record.number++;
+				while (parseField()) {
+					// next field
+				}
+				consumer.accept(record);
+			}
+		}
+
+		/**
+		 * Parses a field and consumes its terminator.
+		 * 
+		 * @return true if another field of the record follows
+		 * @throws IOException in case of IO errors or an unterminated quoted field
+		 */
+		private boolean parseField() throws IOException {
+
+			fieldStart = pos;
+			if (quoting && (pos < limit || fill()) && buffer[pos] == quote) {
+				return parseQuotedField();
+			}
+			while (true) {
+				while (pos < limit) {
+					char c = buffer[pos];
+					if (c == delimiter || c == '\n' || c == '\r') {
+						addField(pos);
+						return terminate(c);
+					}
+					pos++;
+				}
+				if (!fill()) {
+					addField(pos);
+					return false;
+				}
+			}
+		}
+
+		/**
+		 * Parses a quoted field, unescaping it in place, and consumes its terminator.
+		 * 
+		 * @return true if another field of the record follows
+		 * @throws IOException in case of IO errors or an unterminated quoted field
+		 */
+		private boolean parseQuotedField() throws IOException {
+
+			pos++;
+			fieldStart = pos;
+			write = pos;
+			while (true) {
+				if (pos == limit && !fill()) {
+					throw new IOException("Unterminated quoted field in record " + record.number);
+				}
+				char c = buffer[pos++];
+				if (c == quote) {
+					if (pos == limit && !fill()) {
+						addField(write);
+						return false;
+					}
+					if (buffer[pos] != quote) {
+						break;
+					}
+					pos++;
+				}
+				buffer[write++] = c;
+			}
+			// characters after the closing quote are appended
+			while (true) {
+				while (pos < limit) {
+					char c = buffer[pos];
+					if (c == delimiter || c == '\n' || c == '\r') {
+						addField(write);
+						return terminate(c);
+					}
+					buffer[write++] = c;
+					pos++;
+				}
+				if (!fill()) {
+					addField(write);
+					return false;
+				}
+			}
+		}
+
+		/**
+		 * Consumes the terminator of a field at the current position.
+		 * 
+		 * @param c		the terminator
+		 * @return true if it is a delimiter, false if it is a line break
+		 * @throws IOException in case of IO errors
+		 */
+		private boolean terminate(char c) throws IOException {
+
+			pos++;
+			if (c == delimiter) {
+				return true;
+			}
+			if (c == '\r' && (pos < limit || fill()) && buffer[pos] == '\n') {
+				pos++;
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,613 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil.io;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.regex.*;
+import java.util.stream.*;
+
+/**
+ * Walks a directory tree in parallel: each directory is read by a task of a <code>ForkJoinPool</code>,
+ * subdirectories are forked, idle threads steal them. The entries are filtered during the walk
+ * (glob, regular expression, size, modification time, depth) and passed to a consumer or to a lazy
+ * <code>Stream</code> as soon as they are found, nothing is collected. This replaces calling
+ * <code>find</code> by a <code>CommandExecutor</code> and parsing its output.<br/>
+ * The memory is bounded by the directories waiting to be read (not by the number of files),
+ * and for a <code>Stream</code> by the capacity of its queue.<br/>
+ * The entries are found in no particular order. The root directory itself is not an entry,
+ * its entries have depth 1. By default only non-directories are reported, symbolic links are not followed.
+ * <pre>
+ * Examples:
+ * 
+ * 		new DirectoryWalker(Path.of("/var/log"))
+ * 				.glob("*.log")
+ * 				.modifiedBefore(Instant.now().minus(Duration.ofDays(30)))
+ * 				.walk((path, attributes) -&gt; deleteQuietly(path));		// called concurrently
+ * 
+ * 		try (Stream&lt;DirectoryWalker.Entry&gt; entries = new DirectoryWalker(root).minSize(1 &lt;&lt; 30).stream()) {
+ * 			entries.forEach(entry -&gt; System.out.println(entry.getPath() + " " + entry.getAttributes().size()));
+ * 		}
+ * </pre>
+ */
+public class DirectoryWalker {
+
+	/** the default capacity of the queue of a stream */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+	/** the end of the entries of a stream */
+	private static final Entry END = new Entry(null, null);
+
+	/** the root directory */
+	private final Path root;
+	/** the maximum depth of reported entries */
+	private int maxDepth = Integer.MAX_VALUE;
+	/** true to report directories too */
+	private boolean directories;
+	/** true to follow symbolic links */
+	private boolean followLinks;
+	/** the glob matcher of file names, or null */
+	private PathMatcher globMatcher;
+	/** the regular expression of relative paths, or null */
+	private Pattern regex;
+	/** the minimum size of non-directories */
+	private long minSize;
+	/** the maximum size of non-directories */
+	private long maxSize = Long.MAX_VALUE;
+	/** the exclusive lower bound of the modification time, or null */
+	private FileTime modifiedAfter;
+	/** the exclusive upper bound of the modification time, or null */
+	private FileTime modifiedBefore;
+	/** an additional filter, or null */
+	private BiPredicate<Path, BasicFileAttributes> filter;
+	/** the handler of IO errors during the walk, or null to abort the walk */
+	private Consumer<IOException> errorHandler;
+	/** the pool executing the walk, or null for the default */
+	private ForkJoinPool pool;
+	/** the capacity of the queue of a stream */
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+	/**
+	 * Construction of a walker of a directory tree, without any filter.
+	 * 
+	 * @param root		the root directory
+	 */
+	public DirectoryWalker(Path root) {
+
+		this.root = root;
+	}
+
+	/**
+	 * Returns true if an entry passes all filters.
+	 * 
+	 * @param path				the path of the entry
+	 * @param attributes		the attributes of the entry
+	 * @return true if the entry is reported
+	 */
+	private boolean accepts(Path path, BasicFileAttributes attributes) {
+
+		if (attributes.isDirectory()) {
+			if (!directories) {
+				return false;
+			}
+		} else if (attributes.size() < minSize || attributes.size() > maxSize) {
+			return false;
+		}
+		if (modifiedAfter != null && attributes.lastModifiedTime().compareTo(modifiedAfter) <= 0) {
+			return false;
+		}
+		if (modifiedBefore != null && attributes.lastModifiedTime().compareTo(modifiedBefore) >= 0) {
+			return false;
+		}
+		if (globMatcher != null && !globMatcher.matches(path.getFileName())) {
+			return false;
+		}
+		if (regex != null && !regex.matcher(root.relativize(path).toString()).matches()) {
+			return false;
+		}
+		return filter == null || filter.test(path, attributes);
+	}
+
+	/**
+	 * Returns the attributes of a symbolic link whose target is not readable.
+	 * 
+	 * @param path		the path
+	 * @return the attributes of the link, or null if it is not a link
+	 */
+	private static BasicFileAttributes brokenLinkAttributes(Path path) {
+
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class,
+					LinkOption.NOFOLLOW_LINKS);
+			return attributes.isSymbolicLink() ? attributes : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Sets whether directories are reported too (their size is not filtered).
+	 * 
+	 * @param directories		true to report directories, the default is false
+	 * @return this walker
+	 */
+	public DirectoryWalker directories(boolean directories) {
+
+		this.directories = directories;
+		return this;
+	}
+
+	/**
+	 * Sets a handler of IO errors (like unreadable directories), the walk continues.
+	 * Without a handler, the first error aborts the walk and is thrown.
+	 * 
+	 * @param errorHandler		the handler, called concurrently, or null
+	 * @return this walker
+	 */
+	public DirectoryWalker errorHandler(Consumer<IOException> errorHandler) {
+
+		this.errorHandler = errorHandler;
+		return this;
+	}
+
+	/**
+	 * Sets an additional filter of the entries, applied after all other filters.
+	 * 
+	 * @param filter		the filter, called concurrently, or null
+	 * @return this walker
+	 */
+	public DirectoryWalker filter(BiPredicate<Path, BasicFileAttributes> filter) {
+
+		this.filter = filter;
+		return this;
+	}
+
+	/**
+	 * Sets whether symbolic links are followed. Cycles are detected by the file keys of the directories.
+	 * 
+	 * @param followLinks		true to follow links, the default is false
+	 * @return this walker
+	 */
+	public DirectoryWalker followLinks(boolean followLinks) {
+
+		this.followLinks = followLinks;
+		return this;
+	}
+
+	/**
+	 * Sets a glob pattern the file names (not the paths) of the entries must match, like "*.{log,txt}".
+	 * 
+	 * @param glob		the glob pattern, see <code>FileSystem.getPathMatcher()</code>, or null
+	 * @return this walker
+	 * @throws IllegalArgumentException if the pattern is invalid
+	 */
+	public DirectoryWalker glob(String glob) throws IllegalArgumentException {
+
+		globMatcher = glob == null ? null : root.getFileSystem().getPathMatcher("glob:" + glob);
+		return this;
+	}
+
+	/**
+	 * Handles an IO error during the walk.
+	 * 
+	 * @param e		the error
+	 * @throws UncheckedIOException if there is no error handler
+	 */
+	private void handleError(IOException e) throws UncheckedIOException {
+
+		if (errorHandler == null) {
+			throw new UncheckedIOException(e);
+		}
+		errorHandler.accept(e);
+	}
+
+	/**
+	 * Returns the options reading attributes.
+	 * 
+	 * @return the link options
+	 */
+	private LinkOption[] linkOptions() {
+
+		return followLinks ? new LinkOption[0] : new LinkOption[] {LinkOption.NOFOLLOW_LINKS};
+	}
+
+	/**
+	 * Sets the maximum depth of the reported entries, the entries of the root have depth 1.
+	 * 
+	 * @param maxDepth		the maximum depth, the default is unlimited
+	 * @return this walker
+	 * @throws IllegalArgumentException if <code>maxDepth</code> is negative
+	 */
+	public DirectoryWalker maxDepth(int maxDepth) throws IllegalArgumentException {
+
+		if (maxDepth < 0) {
+			throw new IllegalArgumentException("Invalid depth: " + maxDepth);
+		}
+		this.maxDepth = maxDepth;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum size of non-directories.
+	 * 
+	 * @param maxSize		the maximum size in bytes (inclusive)
+	 * @return this walker
+	 */
+	public DirectoryWalker maxSize(long maxSize) {
+
+		this.maxSize = maxSize;
+		return this;
+	}
+
+	/**
+	 * Sets the minimum size of non-directories.
+	 * 
+	 * @param minSize		the minimum size in bytes (inclusive)
+	 * @return this walker
+	 */
+	public DirectoryWalker minSize(long minSize) {
+
+		this.minSize = minSize;
+		return this;
+	}
+
+	/**
+	 * Reports only entries modified after a point in time.
+	 * 
+	 * @param instant		the point in time (exclusive), or null
+	 * @return this walker
+	 */
+	public DirectoryWalker modifiedAfter(Instant instant) {
+
+		modifiedAfter = instant == null ? null : FileTime.from(instant);
+		return this;
+	}
+
+	/**
+	 * Reports only entries modified before a point in time.
+	 * 
+	 * @param instant		the point in time (exclusive), or null
+	 * @return this walker
+	 */
+	public DirectoryWalker modifiedBefore(Instant instant) {
+
+		modifiedBefore = instant == null ? null : FileTime.from(instant);
+		return this;
+	}
+
+	/**
+	 * Sets the pool executing the walk.
+	 * 
+	 * @param pool		the pool, the default is the common pool for <code>walk()</code> and a new pool
+	 * 					for each <code>stream()</code> (its threads wait while the queue is full)
+	 * @return this walker
+	 */
+	public DirectoryWalker pool(ForkJoinPool pool) {
+
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Sets the capacity of the queue between the walk and a stream, the walk waits while it is full.
+	 * 
+	 * @param queueCapacity		the capacity, the default is {@link #DEFAULT_QUEUE_CAPACITY}
+	 * @return this walker
+	 * @throws IllegalArgumentException if <code>queueCapacity</code> is less than one
+	 */
+	public DirectoryWalker queueCapacity(int queueCapacity) throws IllegalArgumentException {
+
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("Invalid queue capacity: " + queueCapacity);
+		}
+		this.queueCapacity = queueCapacity;
+		return this;
+	}
+
+	/**
+	 * Sets a regular expression the paths of the entries relative to the root must match entirely,
+	 * like <code>find -regex</code>.
+	 * 
+	 * @param regex		the regular expression, or null
+	 * @return this walker
+	 */
+	public DirectoryWalker regex(Pattern regex) {
+
+		this.regex = regex;
+		return this;
+	}
+
+	/**
+	 * Checks that the root is a directory and starts a walk.
+	 * 
+	 * @param consumer		the consumer of the entries, or null to set it later
+	 * @return the state of the walk
+	 * @throws IOException if the root does not exist or is not a directory
+	 */
+	private Walk startWalk(BiConsumer<Path, BasicFileAttributes> consumer) throws IOException {
+
+		BasicFileAttributes attributes = Files.readAttributes(root, BasicFileAttributes.class, linkOptions());
+		if (!attributes.isDirectory()) {
+			throw new NotDirectoryException(root.toString());
+		}
+		Walk walk = new Walk();
+		walk.consumer = consumer;
+		walk.firstVisit(attributes);
+		return walk;
+	}
+
+	/**
+	 * Starts the walk in the background and returns its entries as a lazy, sequential stream.
+	 * The walk stops when the stream is closed, therefore use it within a try-with-resources statement.
+	 * An IO error of the walk (without error handler) is thrown as <code>UncheckedIOException</code>
+	 * by the terminal operation of the stream.
+	 * 
+	 * @return the stream of the entries
+	 * @throws IOException if the root does not exist or is not a directory
+	 */
+	public Stream<Entry> stream() throws IOException {
+
+		Walk walk = startWalk(null);
+		ArrayBlockingQueue<Entry> queue = new ArrayBlockingQueue<>(queueCapacity);
+		walk.consumer = (path, attributes) -> walk.put(queue, new Entry(path, attributes));
+		ForkJoinPool executor = pool != null ? pool : new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		executor.execute(() -> {
+			try {
+				new DirectoryTask(walk, root, 0).invoke();
+			} catch (CancellationException e) {
+				// the stream has been closed
+			} catch (RuntimeException e) {
+				walk.error = e;
+			} finally {
+				if (executor != pool) {
+					executor.shutdown();
+				}
+				if (!walk.cancelled) {
+					try {
+						walk.put(queue, END);
+					} catch (CancellationException e) {
+						// closed meanwhile
+					}
+				}
+			}
+		});
+		Spliterator<Entry> spliterator = new Spliterators.AbstractSpliterator<Entry>(Long.MAX_VALUE,
+				Spliterator.NONNULL) {
+			/** true after the end of the entries */
+			private boolean finished;
+
+			@Override
+			public boolean tryAdvance(Consumer<? super Entry> action) {
+
+				if (finished) {
+					return false;
+				}
+				Entry entry;
+				try {
+					entry = queue.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					walk.cancelled = true;
+					throw new UncheckedIOException(new InterruptedIOException("Walk of " + root + " interrupted"));
+				}
+				if (entry == END) {
+					finished = true;
+					if (walk.error != null) {
+						throw walk.error;
+					}
+					return false;
+				}
+				action.accept(entry);
+				return true;
+			}
+		};
+		return StreamSupport.stream(spliterator, false).onClose(() -> {
+			walk.cancelled = true;
+			queue.clear();
+		});
+	}
+
+	/**
+	 * Walks the directory tree, the consumer is called concurrently by the threads of the pool
+	 * for each entry as soon as it is found. Returns after the walk.
+	 * 
+	 * @param consumer		the consumer of the entries and their attributes
+	 * @throws IOException if the root does not exist or is not a directory, or the first IO error
+	 * 		of the walk without error handler
+	 */
+	public void walk(BiConsumer<Path, BasicFileAttributes> consumer) throws IOException {
+
+		Walk walk = startWalk(consumer);
+		try {
+			(pool == null ? ForkJoinPool.commonPool() : pool).invoke(new DirectoryTask(walk, root, 0));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * The task reading a directory, forking its subdirectories.
+	 */
+	private class DirectoryTask extends RecursiveAction {
+
+		/** the serial version */
+		private static final long serialVersionUID = 1L;
+
+		/** the state of the walk */
+		private final transient Walk walk;
+		/** the directory */
+		private final transient Path dir;
+		/** the depth of the directory */
+		private final int depth;
+
+		/**
+		 * Construction of the task of a directory.
+		 * 
+		 * @param walk		the state of the walk
+		 * @param dir		the directory
+		 * @param depth		the depth of the directory
+		 */
+		private DirectoryTask(Walk walk, Path dir, int depth) {
+
+			this.walk = walk;
+			this.dir = dir;
+			this.depth = depth;
+		}
+
+		@Override
+		protected void compute() {
+
+			if (walk.cancelled || depth >= maxDepth) {
+				return;
+			}
+			List<DirectoryTask> subtasks = new ArrayList<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				LinkOption[] linkOptions = linkOptions();
+				for (Path path : stream) {
+					if (walk.cancelled) {
+						return;
+					}
+					BasicFileAttributes attributes;
+					try {
+						attributes = Files.readAttributes(path, BasicFileAttributes.class, linkOptions);
+					} catch (IOException e) {
+						attributes = followLinks ? brokenLinkAttributes(path) : null;
+						if (attributes == null) {
+							handleError(e);
+							continue;
+						}
+					}
+					if (accepts(path, attributes)) {
+						walk.consumer.accept(path, attributes);
+					}
+					if (attributes.isDirectory() && depth + 1 < maxDepth && walk.firstVisit(attributes)) {
+						subtasks.add(new DirectoryTask(walk, path, depth + 1));
+					}
+				}
+			} catch (IOException e) {
+				handleError(e);
+			} catch (DirectoryIteratorException e) {
+				handleError(e.getCause());
+			}
+			// the directory is closed before descending, limiting the open directories
+			invokeAll(subtasks);
+		}
+	}
+
+	/**
+	 * An entry of the walk: a path and its attributes.
+	 */
+	public static class Entry {
+
+		/** the path */
+		private final Path path;
+		/** the attributes */
+		private final BasicFileAttributes attributes;
+
+		/**
+		 * Construction of an entry.
+		 * 
+		 * @param path				the path
+		 * @param attributes		the attributes
+		 */
+		private Entry(Path path, BasicFileAttributes attributes) {
+
+			this.path = path;
+			this.attributes = attributes;
+		}
+
+		/**
+		 * Returns the attributes, read during the walk.
+		 * 
+		 * @return the attributes
+		 */
+		public BasicFileAttributes getAttributes() {
+
+			return attributes;
+		}
+
+		/**
+		 * Returns the path.
+		 * 
+		 * @return the path
+		 */
+		public Path getPath() {
+
+			return path;
+		}
+
+		@Override
+		public String toString() {
+
+			return String.valueOf(path);
+		}
+	}
+
+	/**
+	 * The state of one walk.
+	 */
+	private class Walk {
+
+		/** the consumer of the entries */
+		private BiConsumer<Path, BasicFileAttributes> consumer;
+		/** the file keys of the visited directories if links are followed, or null */
+		private final Set<Object> visited = followLinks ? ConcurrentHashMap.newKeySet() : null;
+		/** true if the walk has been cancelled */
+		private volatile boolean cancelled;
+		/** the error of a walk of a stream, or null */
+		private volatile RuntimeException error;
+
+		/**
+		 * Returns true if a directory is visited the first time, always true if links are not followed.
+		 * 
+		 * @param attributes		the attributes of the directory
+		 * @return true if it is not yet visited
+		 */
+		private boolean firstVisit(BasicFileAttributes attributes) {
+
+			Object fileKey = attributes.fileKey();
+			return visited == null || fileKey == null || visited.add(fileKey);
+		}
+
+		/**
+		 * Puts an entry into the queue of a stream, waits while the queue is full.
+		 * 
+		 * @param queue		the queue
+		 * @param entry		the entry
+		 * @throws CancellationException if the stream has been closed
+		 */
+		private void put(BlockingQueue<Entry> queue, Entry entry) throws CancellationException {
+
+			try {
+				while (!queue.offer(entry, 100, TimeUnit.MILLISECONDS)) {
+					if (cancelled) {
+						throw new CancellationException();
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				cancelled = true;
+				throw new CancellationException();
+			}
+		}
+	}
+}
@@ -0,0 +1,431 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil.io;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.zip.*;
+
+/**
+ * Copies, moves and concatenates files and directory trees without a process (like <code>cp</code>)
+ * and without copying the data through buffers of the JVM: the data is transferred by
+ * <code>FileChannel.transferTo()</code>, therefore by the kernel (e.g. <code>sendfile</code> on Linux).<br/>
+ * The files of a directory tree are copied in parallel, the progress can be reported to a listener,
+ * and the copies can be verified by CRC32C checksums.
+ * <pre>
+ * Examples:
+ * 
+ * 		new FileTransfer().copy(Path.of("app.jar"), Path.of("deploy/app.jar"));
+ * 
+ * 		new FileTransfer()
+ * 				.parallelism(8)
+ * 				.replaceExisting(true)
+ * 				.verify(true)
+ * 				.progressListener((done, total) -&gt; System.out.println(100 * done / total + "%"))
+ * 				.copyTree(Path.of("build"), Path.of("/mnt/artifacts/build"));
+ * 
+ * 		new FileTransfer().concat(List.of(Path.of("part1"), Path.of("part2")), Path.of("all"));
+ * </pre>
+ */
+public class FileTransfer {
+
+	/** the maximum number of bytes transferred by one call, the granularity of the progress */
+	private static final long TRANSFER_CHUNK_SIZE = 8L << 20;
+	/** the size of the buffer computing checksums */
+	private static final int CHECKSUM_BUFFER_SIZE = 1 << 20;
+
+	/** the number of files copied at the same time */
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	/** the listener of the progress, or null */
+	private ProgressListener progressListener;
+	/** true to replace existing target files */
+	private boolean replaceExisting;
+	/** true to verify the copies by checksums */
+	private boolean verify;
+
+	/**
+	 * Construction of a file transfer with default settings: one thread per processor, not replacing
+	 * existing files, without verification and without progress listener.
+	 */
+	public FileTransfer() {
+
+	}
+
+	/**
+	 * Returns the CRC32C checksum of a file.
+	 * 
+	 * @param file		the file
+	 * @return the checksum
+	 * @throws IOException in case of IO errors
+	 */
+	public static long checksum(Path file) throws IOException {
+
+		CRC32C crc = new CRC32C();
+		updateChecksum(crc, file);
+		return crc.getValue();
+	}
+
+	/**
+	 * Concatenates files into a target file.
+	 * 
+	 * @param sources		the files to concatenate
+	 * @param target		the target file
+	 * @return the number of bytes of the target file
+	 * @throws IOException in case of IO errors, or if the target exists and <code>replaceExisting</code> is false
+	 */
+	public long concat(List<Path> sources, Path target) throws IOException {
+
+		long total = 0;
+		for (Path source : sources) {
+			total += Files.size(source);
+		}
+		AtomicLong transferred = new AtomicLong();
+		try (FileChannel out = FileChannel.open(target, writeOptions())) {
+			for (Path source : sources) {
+				try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+					transfer(in, out, transferred, total);
+				}
+			}
+		}
+		if (verify) {
+			CRC32C expected = new CRC32C();
+			for (Path source : sources) {
+				updateChecksum(expected, source);
+			}
+			CRC32C actual = new CRC32C();
+			updateChecksum(actual, target);
+			if (expected.getValue() != actual.getValue()) {
+				throw new IOException("Checksum mismatch of " + target);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Copies a file. Like <code>Files.copy()</code>, a file copied to itself is left unchanged.
+	 * 
+	 * @param source		the source file
+	 * @param target		the target file
+	 * @return the number of bytes copied
+	 * @throws IOException in case of IO errors, if the target exists and <code>replaceExisting</code> is false,
+	 * 		or if the verification fails
+	 */
+	public long copy(Path source, Path target) throws IOException {
+
+		long size = Files.size(source);
+		copyFile(source, target, new AtomicLong(), size);
+		return size;
+	}
+
+	/**
+	 * Copies a file, verifies it if requested.
+	 * 
+	 * @param source			the source file
+	 * @param target			the target file
+	 * @param transferred		the bytes transferred so far, for the progress
+	 * @param total				the total bytes to transfer, for the progress
+	 * @throws IOException in case of IO errors or if the verification fails
+	 */
+	private void copyFile(Path source, Path target, AtomicLong transferred, long total) throws IOException {
+
+		if (Files.exists(target) && Files.isSameFile(source, target)) {
+			// opening the target would truncate the source
+			return;
+		}
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(target, writeOptions())) {
+			transfer(in, out, transferred, total);
+		}
+		if (verify && checksum(source) != checksum(target)) {
+			throw new IOException("Checksum mismatch of " + target + " (copy of " + source + ")");
+		}
+	}
+
+	/**
+	 * Copies a directory tree, the files are copied in parallel. Directories are created as needed,
+	 * symbolic links are followed. Files copied to themselves are left unchanged.
+	 * 
+	 * @param sourceDir		the source directory
+	 * @param targetDir		the target directory, created if it does not exist
+	 * @return the number of bytes copied
+	 * @throws IOException in case of IO errors (the first one), if a target file exists and
+	 * 		<code>replaceExisting</code> is false, or if a verification fails
+	 */
+	public long copyTree(Path sourceDir, Path targetDir) throws IOException {
+
+		List<Path[]> files = new ArrayList<>();
+		long[] total = new long[1];
+		Files.walkFileTree(sourceDir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+				new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+
+				Files.createDirectories(targetDir.resolve(sourceDir.relativize(dir).toString()));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+
+				files.add(new Path[] {file, targetDir.resolve(sourceDir.relativize(file).toString())});
+				total[0] += attributes.size();
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		AtomicLong transferred = new AtomicLong();
+		AtomicInteger threadNumber = new AtomicInteger();
+		ExecutorService threadPool = Executors.newFixedThreadPool(parallelism, runnable -> {
+			Thread thread = new Thread(runnable, "FileTransfer-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Future<?>> futures = new ArrayList<>(files.size());
+			for (Path[] file : files) {
+				futures.add(threadPool.submit(() -> {
+					copyFile(file[0], file[1], transferred, total[0]);
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Copy of " + sourceDir + " interrupted");
+		} finally {
+			threadPool.shutdownNow();
+		}
+		return total[0];
+	}
+
+	/**
+	 * Deletes a directory tree (or a file).
+	 * 
+	 * @param path		the directory or file
+	 * @throws IOException in case of IO errors
+	 */
+	private static void deleteTree(Path path) throws IOException {
+
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+
+				if (e != null) {
+					throw e;
+				}
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Returns true if a failed move is the one of a directory to another file store (which requires 
+	 * moving its entries), to a target which does not exist (anymore).
+	 * 
+	 * @param source		the source file or directory
+	 * @param target		the target file or directory
+	 * @return true if the directory tree can be copied and deleted instead
+	 * @throws IOException in case of IO errors
+	 */
+	private static boolean isCrossFileStoreMove(Path source, Path target) throws IOException {
+
+		Path targetParent = target.toAbsolutePath().getParent();
+		return Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS) && targetParent != null
+				&& Files.notExists(target, LinkOption.NOFOLLOW_LINKS)
+				&& !Files.getFileStore(source).equals(Files.getFileStore(targetParent));
+	}
+
+	/**
+	 * Moves a file or directory tree. Within a file system it is renamed, a directory tree moved 
+	 * to another file system is copied (in parallel) and deleted afterwards.<br/>
+	 * An existing target directory is only replaced if it is empty, it is never merged with the source.
+	 * 
+	 * @param source		the source file or directory
+	 * @param target		the target file or directory
+	 * @throws IOException in case of IO errors, or if the target exists and <code>replaceExisting</code> is false
+	 * 		(<code>FileAlreadyExistsException</code>) or it is a directory which is not empty 
+	 * 		(<code>DirectoryNotEmptyException</code>)
+	 */
+	public void move(Path source, Path target) throws IOException {
+
+		try {
+			if (replaceExisting) {
+				Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+			} else {
+				Files.move(source, target);
+			}
+			return;
+		} catch (DirectoryNotEmptyException e) {
+			if (!isCrossFileStoreMove(source, target)) {
+				throw e;
+			}
+		}
+		copyTree(source, target);
+		deleteTree(source);
+	}
+
+	/**
+	 * Sets the number of files copied at the same time by <code>copyTree()</code>.
+	 * 
+	 * @param parallelism		the number of threads, the default is the number of processors
+	 * @return this file transfer
+	 * @throws IllegalArgumentException if <code>parallelism</code> is less than one
+	 */
+	public FileTransfer parallelism(int parallelism) throws IllegalArgumentException {
+
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+		}
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * Sets a listener of the progress. It is called after each transferred chunk (at most 8 MiB),
+	 * from the copying threads, but never concurrently.
+	 * 
+	 * @param progressListener		the listener, or null
+	 * @return this file transfer
+	 */
+	public FileTransfer progressListener(ProgressListener progressListener) {
+
+		this.progressListener = progressListener;
+		return this;
+	}
+
+	/**
+	 * Sets whether existing target files are replaced.
+	 * 
+	 * @param replaceExisting		true to replace existing files, the default is false
+	 * @return this file transfer
+	 */
+	public FileTransfer replaceExisting(boolean replaceExisting) {
+
+		this.replaceExisting = replaceExisting;
+		return this;
+	}
+
+	/**
+	 * Transfers a channel to the end of another one by the kernel, reports the progress.
+	 * 
+	 * @param in				the source channel
+	 * @param out				the target channel
+	 * @param transferred		the bytes transferred so far
+	 * @param total				the total bytes to transfer
+	 * @throws IOException in case of IO errors
+	 */
+	private void transfer(FileChannel in, FileChannel out, AtomicLong transferred, long total) throws IOException {
+
+		long size = in.size();
+		long position = 0;
+		while (position < size) {
+			long count = in.transferTo(position, Math.min(TRANSFER_CHUNK_SIZE, size - position), out);
+			if (count <= 0) {
+				// the source has been truncated meanwhile
+				break;
+			}
+			position += count;
+			if (progressListener != null) {
+				synchronized (progressListener) {
+					// added within the lock, the reported values never decrease
+					progressListener.progress(transferred.addAndGet(count), total);
+				}
+			} else {
+				transferred.addAndGet(count);
+			}
+		}
+	}
+
+	/**
+	 * Updates a checksum with the content of a file.
+	 * 
+	 * @param crc		the checksum
+	 * @param file		the file
+	 * @throws IOException in case of IO errors
+	 */
+	private static void updateChecksum(CRC32C crc, Path file) throws IOException {
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(CHECKSUM_BUFFER_SIZE);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				crc.update(buffer);
+				buffer.clear();
+			}
+		}
+	}
+
+	/**
+	 * Sets whether the copies are verified by comparing CRC32C checksums of the source and the target.
+	 * This reads both files again.
+	 * 
+	 * @param verify		true to verify, the default is false
+	 * @return this file transfer
+	 */
+	public FileTransfer verify(boolean verify) {
+
+		this.verify = verify;
+		return this;
+	}
+
+	/**
+	 * Returns the options to open a target file.
+	 * 
+	 * @return the options
+	 */
+	private Set<StandardOpenOption> writeOptions() {
+
+		return replaceExisting
+				? EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)
+				: EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+	}
+
+	/**
+	 * The listener of the progress of a transfer.
+	 */
+	@FunctionalInterface
+	public interface ProgressListener {
+
+		/**
+		 * Reports the progress.
+		 * 
+		 * @param transferredBytes		the bytes transferred so far
+		 * @param totalBytes			the total bytes to transfer
+		 */
+		void progress(long transferredBytes, long totalBytes);
+	}
+}
@@ -0,0 +1,432 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil.io;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * A fast reader of lines (or records with another delimiter) of large files, by memory-mapping
+ * the file in segments. The lines are passed as a reused <code>CharSequence</code> view of the mapped
+ * bytes, no <code>String</code> is created per line (unless the caller calls <code>toString()</code>).<br/>
+ * Supported are US-ASCII, ISO-8859-1 and UTF-8 files: lines containing only ASCII characters
+ * are never decoded, other UTF-8 lines are decoded into a reused buffer. The delimiter is searched
+ * for 8 bytes at a time. A line ends at '\n' (a preceding '\r' is removed) or at the end of the file.<br/>
+ * A reader can be restricted to a byte range of a file: it reads the lines starting within the range,
+ * so adjacent ranges read every line exactly once (e.g. for parallel processing, 
+ * see {@link ParallelFileScanner}).
+ * <pre>
+ * Example:
+ * 
+ * 		try (MappedLineReader reader = new MappedLineReader(Path.of("huge.log"))) {
+ * 			while (reader.next()) {
+ * 				CharSequence line = reader.line();		// valid until the next call of next()
+ * 				if (line.length() &gt; 0 &amp;&amp; line.charAt(0) == 'E') {
+ * 					errors.add(line.toString());
+ * 				}
+ * 			}
+ * 		}
+ * </pre>
+ * Note: a mapped segment is released by the garbage collector, not by <code>close()</code>.
+ * Not thread-safe, use one reader per thread.
+ */
+public class MappedLineReader implements AutoCloseable {
+
+	/** the default maximum size of a mapped segment of the file, also the maximum length of a line */
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+	/** eight times the byte 0x01 */
+	private static final long ONES = 0x0101010101010101L;
+	/** eight times the byte 0x80 */
+	private static final long HIGH_BITS = 0x8080808080808080L;
+
+	/** the channel of the file */
+	private final FileChannel channel;
+	/** the size of the file */
+	private final long fileSize;
+	/** true for a single byte charset, false for UTF-8 */
+	private final boolean singleByte;
+	/** the delimiter of the lines or records */
+	private final byte delimiter;
+	/** the delimiter repeated in each byte of a long */
+	private final long delimiterPattern;
+	/** the end of the byte range, lines starting at or after it are not read */
+	private final long end;
+	/** the maximum size of a mapped segment */
+	private final int segmentSize;
+	/** the reused view of the current line */
+	private final LineView view = new LineView();
+	/** the decoder of non-ASCII UTF-8 lines, or null */
+	private final CharsetDecoder decoder;
+	/** the mapped segment */
+	private MappedByteBuffer segment;
+	/** the duplicate of the segment used by the decoder */
+	private ByteBuffer decoderInput;
+	/** the position of the segment in the file */
+	private long segmentStart;
+	/** the position of the next line in the file */
+	private long position;
+	/** the position of the current line in the file */
+	private long linePosition = -1;
+	/** true if the bytes scanned by the last delimiter search are all ASCII */
+	private boolean scannedAscii;
+
+	/**
+	 * Construction of a reader of an UTF-8 file.
+	 * 
+	 * @param file		the file
+	 * @throws IOException in case of IO errors
+	 */
+	public MappedLineReader(Path file) throws IOException {
+
+		this(file, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Construction of a reader of a file.
+	 * 
+	 * @param file			the file
+	 * @param charset		the charset: US-ASCII, ISO-8859-1 or UTF-8
+	 * @throws IOException in case of IO errors
+	 * @throws IllegalArgumentException if the charset is not supported
+	 */
+	public MappedLineReader(Path file, Charset charset) throws IOException, IllegalArgumentException {
+
+		this(file, charset, (byte) '\n', 0, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Construction of a reader of the lines or records of a file starting within a byte range.
+	 * 
+	 * @param file			the file
+	 * @param charset		the charset: US-ASCII, ISO-8859-1 or UTF-8
+	 * @param delimiter		the delimiter of lines or records, e.g. '\n' or 0, a '\r' before a '\n' is removed
+	 * @param start			the start of the byte range
+	 * @param end			the end of the byte range (exclusive), may be beyond the end of the file
+	 * @throws IOException in case of IO errors
+	 * @throws IllegalArgumentException if the charset is not supported or the range is invalid
+	 */
+	public MappedLineReader(Path file, Charset charset, byte delimiter, long start, long end)
+			throws IOException, IllegalArgumentException {
+
+		this(file, charset, delimiter, start, end, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Construction of a reader with a segment size.
+	 * 
+	 * @param file				the file
+	 * @param charset			the charset: US-ASCII, ISO-8859-1 or UTF-8
+	 * @param delimiter			the delimiter of lines or records
+	 * @param start				the start of the byte range
+	 * @param end				the end of the byte range (exclusive)
+	 * @param segmentSize		the maximum size of a mapped segment
+	 * @throws IOException in case of IO errors
+	 * @throws IllegalArgumentException if the charset is not supported or the range is invalid
+	 */
+	MappedLineReader(Path file, Charset charset, byte delimiter, long start, long end, int segmentSize)
+			throws IOException, IllegalArgumentException {
+
+		if (charset.equals(StandardCharsets.UTF_8)) {
+			singleByte = false;
+			decoder = charset.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		} else if (charset.equals(StandardCharsets.US_ASCII) || charset.equals(StandardCharsets.ISO_8859_1)) {
+			singleByte = true;
+			decoder = null;
+		} else {
+			throw new IllegalArgumentException("Unsupported charset: " + charset);
+		}
+		if (start < 0 || end < start || segmentSize < 16) {
+			throw new IllegalArgumentException("Invalid range " + start + "-" + end + " or segment size " + segmentSize);
+		}
+		this.delimiter = delimiter;
+		delimiterPattern = (delimiter & 0xFFL) * ONES;
+		this.end = end;
+		this.segmentSize = segmentSize;
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			fileSize = channel.size();
+			position = start;
+			if (start > 0 && start < fileSize) {
+				// a line starts at the range, if the previous byte is a delimiter; otherwise skip the partial line
+				map(start - 1);
+				if (segment.get(0) != delimiter) {
+					long found = findDelimiter(start);
+					position = found < 0 ? fileSize : found + 1;
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Closes the file.
+	 * 
+	 * @throws IOException in case of IO errors
+	 */
+	@Override
+	public void close() throws IOException {
+
+		channel.close();
+		segment = null;
+		decoderInput = null;
+	}
+
+	/**
+	 * Searches the next delimiter, maps the segment containing the bytes from <code>from</code> to the delimiter.
+	 * 
+	 * @param from		the position to start searching
+	 * @return the position of the delimiter, or -1 if the file ends before
+	 * @throws IOException in case of IO errors, or if a line is longer than the segment size
+	 */
+	private long findDelimiter(long from) throws IOException {
+
+		if (segment == null || from < segmentStart || from >= segmentStart + segment.limit()) {
+			map(from);
+		}
+		while (true) {
+			int index = scan((int) (from - segmentStart));
+			if (index >= 0) {
+				return segmentStart + index;
+			}
+			if (segmentStart + segment.limit() >= fileSize) {
+				return -1;
+			}
+			if (segmentStart == from) {
+				throw new IOException("Line at position " + from + " is longer than " + segmentSize + " bytes");
+			}
+			// the line continues in the next segment: map a segment starting with the line
+			map(from);
+		}
+	}
+
+	/**
+	 * Passes all (remaining) lines to a consumer. The <code>CharSequence</code> is reused for the next line,
+	 * call <code>toString()</code> to keep it.
+	 * 
+	 * @param lineConsumer		the consumer of the lines
+	 * @throws IOException in case of IO errors
+	 */
+	public void forEach(Consumer<? super CharSequence> lineConsumer) throws IOException {
+
+		while (next()) {
+			lineConsumer.accept(view);
+		}
+	}
+
+	/**
+	 * Returns the position of the current line in the file (in bytes).
+	 * 
+	 * @return the position, or -1 before the first call of <code>next()</code>
+	 */
+	public long getLinePosition() {
+
+		return linePosition;
+	}
+
+	/**
+	 * Returns the current line, without the delimiter. The returned view is reused and valid
+	 * until the next call of <code>next()</code>, call <code>toString()</code> to keep it.
+	 * 
+	 * @return the current line
+	 * @throws IllegalStateException if there is no current line
+	 */
+	public CharSequence line() throws IllegalStateException {
+
+		if (linePosition < 0) {
+			throw new IllegalStateException("No current line, call next() first");
+		}
+		return view;
+	}
+
+	/**
+	 * Maps a segment of the file.
+	 * 
+	 * @param start		the position of the segment in the file
+	 * @throws IOException in case of IO errors
+	 */
+	private void map(long start) throws IOException {
+
+		long size = Math.min(segmentSize, fileSize - start);
+		segment = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+		segment.order(ByteOrder.LITTLE_ENDIAN);
+		segmentStart = start;
+		decoderInput = singleByte ? null : segment.duplicate();
+	}
+
+	/**
+	 * Advances to the next line.
+	 * 
+	 * @return true if there is a next line, false at the end of the file or the byte range
+	 * @throws IOException in case of IO errors, or if a line is longer than the segment size
+	 */
+	public boolean next() throws IOException {
+
+		if (position >= end || position >= fileSize) {
+			linePosition = -1;
+			return false;
+		}
+		long found = findDelimiter(position);
+		long lineEnd = found < 0 ? fileSize : found;
+		int from = (int) (position - segmentStart);
+		int to = (int) (lineEnd - segmentStart);
+		if (delimiter == '\n' && to > from && segment.get(to - 1) == '\r') {
+			to--;
+		}
+		if (singleByte || scannedAscii) {
+			view.setBytes(from, to);
+		} else {
+			decode(from, to);
+		}
+		linePosition = position;
+		position = found < 0 ? fileSize : found + 1;
+		return true;
+	}
+
+	/**
+	 * Decodes an UTF-8 line into the character buffer of the view.
+	 * 
+	 * @param from		the index of the first byte in the segment
+	 * @param to		the index after the last byte in the segment
+	 */
+	private void decode(int from, int to) {
+
+		decoderInput.limit(to).position(from);
+		if (view.chars == null || view.chars.capacity() < to - from) {
+			view.chars = CharBuffer.allocate(Math.max(to - from, 256));
+		}
+		view.chars.clear();
+		decoder.reset();
+		decoder.decode(decoderInput, view.chars, true);
+		decoder.flush(view.chars);
+		view.setChars(view.chars.position());
+	}
+
+	/**
+	 * Scans the segment for the delimiter, 8 bytes at a time, and notes if the scanned bytes are ASCII.
+	 * 
+	 * @param from		the index to start in the segment
+	 * @return the index of the delimiter in the segment, or -1 if not found
+	 */
+	private int scan(int from) {
+
+		int limit = segment.limit();
+		long highBits = 0;
+		int i = from;
+		for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+			long word = segment.getLong(i);
+			long matches = word ^ delimiterPattern;
+			// the lowest byte being zero sets its high bit (higher bytes may be false positives)
+			matches = (matches - ONES) & ~matches & HIGH_BITS;
+			if (matches != 0) {
+				int bytes = Long.numberOfTrailingZeros(matches) >>> 3;
+				highBits |= word & ((1L << (bytes << 3)) - 1);
+				scannedAscii = (highBits & HIGH_BITS) == 0;
+				return i + bytes;
+			}
+			highBits |= word;
+		}
+		for (; i < limit; i++) {
+			byte b = segment.get(i);
+			if (b == delimiter) {
+				scannedAscii = (highBits & HIGH_BITS) == 0;
+				return i;
+			}
+			highBits |= b & 0x80;
+		}
+		scannedAscii = (highBits & HIGH_BITS) == 0;
+		return -1;
+	}
+
+	/**
+	 * The view of the current line, either of the mapped bytes or of decoded characters.
+	 */
+	private class LineView implements CharSequence {
+
+		/** the index of the first byte in the segment */
+		private int from;
+		/** the length in characters */
+		private int length;
+		/** the decoded characters of an UTF-8 line, reused */
+		private CharBuffer chars;
+		/** true if the view shows the decoded characters */
+		private boolean decoded;
+
+		@Override
+		public char charAt(int index) {
+
+			Objects.checkIndex(index, length);
+			return decoded ? chars.get(index) : (char) (segment.get(from + index) & 0xFF);
+		}
+
+		@Override
+		public int length() {
+
+			return length;
+		}
+
+		/**
+		 * Shows bytes of the segment as characters.
+		 * 
+		 * @param from		the index of the first byte
+		 * @param to		the index after the last byte
+		 */
+		private void setBytes(int from, int to) {
+
+			this.from = from;
+			length = to - from;
+			decoded = false;
+		}
+
+		/**
+		 * Shows the decoded characters.
+		 * 
+		 * @param length		the number of characters
+		 */
+		private void setChars(int length) {
+
+			this.length = length;
+			decoded = true;
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+
+			return toString().substring(start, end);
+		}
+
+		@Override
+		public String toString() {
+
+			if (decoded) {
+				return new String(chars.array(), 0, length);
+			}
+			byte[] bytes = new byte[length];
+			segment.get(from, bytes);
+			return new String(bytes, StandardCharsets.ISO_8859_1);
+		}
+	}
+}
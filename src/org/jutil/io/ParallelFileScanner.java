@@ -0,0 +1,296 @@
+
+/**
+ * Copyright 2023 Heinz Silberbauer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jutil.io;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.regex.*;
+
+/**
+ * Scans the lines (or records) of a large file in parallel: the file is split into byte ranges 
+ * (chunks), each chunk is read by a {@link MappedLineReader} on a <code>ForkJoinPool</code> into its own
+ * result container (accumulator), and the containers are merged (combiner). Each line belongs to the 
+ * chunk it starts in, therefore the chunks need no alignment and every line is read exactly once.<br/>
+ * The containers are merged in file order: the combiner gets the container of the earlier part 
+ * of the file as its first argument.
+ * <pre>
+ * Examples:
+ * 
+ * 		ParallelFileScanner scanner = new ParallelFileScanner(Path.of("access.log"));
+ * 
+ * 		long errors = scanner.count(line -&gt; line.length() &gt; 0 &amp;&amp; line.charAt(0) == 'E');
+ * 
+ * 		List&lt;String&gt; lines = scanner.grep(Pattern.compile("user=(admin|root)"));
+ * 
+ * 		Map&lt;String, Long&gt; hits = scanner.countBy(line -&gt; line.subSequence(0, 10).toString());	// per day
+ * 
+ * 		// any aggregation, e.g. the total of a column:
+ * 		long[] total = scanner.scan(() -&gt; new long[1], 
+ * 				(sum, line) -&gt; sum[0] += parseBytes(line), 
+ * 				(sum1, sum2) -&gt; { sum1[0] += sum2[0]; return sum1; });
+ * </pre>
+ * The accumulator is called concurrently for different chunks, but never concurrently for the 
+ * same container. The <code>CharSequence</code> of a line is reused, call <code>toString()</code> to keep it.
+ */
+public class ParallelFileScanner {
+
+	/** the default size of a chunk */
+	public static final long DEFAULT_CHUNK_SIZE = 32L << 20;
+
+	/** the file to scan */
+	private final Path file;
+	/** the charset of the file */
+	private Charset charset = StandardCharsets.UTF_8;
+	/** the delimiter of lines or records */
+	private byte delimiter = '\n';
+	/** the size of a chunk */
+	private long chunkSize = DEFAULT_CHUNK_SIZE;
+	/** the pool executing the chunks, or null for the common pool */
+	private ForkJoinPool pool;
+
+	/**
+	 * Construction of a scanner of an UTF-8 file with lines ending with '\n'.
+	 * 
+	 * @param file		the file
+	 */
+	public ParallelFileScanner(Path file) {
+
+		this.file = file;
+	}
+
+	/**
+	 * Sets the charset of the file.
+	 * 
+	 * @param charset		US-ASCII, ISO-8859-1 or UTF-8 (default)
+	 * @return this scanner
+	 */
+	public ParallelFileScanner charset(Charset charset) {
+
+		this.charset = charset;
+		return this;
+	}
+
+	/**
+	 * Sets the size of the chunks: smaller chunks balance the load better, larger ones have less overhead.
+	 * 
+	 * @param chunkSize		the size in bytes, the default is 32 MiB
+	 * @return this scanner
+	 * @throws IllegalArgumentException if the size is not positive
+	 */
+	public ParallelFileScanner chunkSize(long chunkSize) throws IllegalArgumentException {
+
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+		}
+		this.chunkSize = chunkSize;
+		return this;
+	}
+
+	/**
+	 * Counts the lines matching a predicate.
+	 * 
+	 * @param predicate		the predicate
+	 * @return the number of matching lines
+	 * @throws IOException in case of IO errors
+	 */
+	public long count(Predicate<CharSequence> predicate) throws IOException {
+
+		return scan(() -> new long[1], (count, line) -> {
+			if (predicate.test(line)) {
+				count[0]++;
+			}
+		}, (count1, count2) -> {
+			count1[0] += count2[0];
+			return count1;
+		})[0];
+	}
+
+	/**
+	 * Counts the lines per key, e.g. the lines per day of a log file.
+	 * 
+	 * @param <K>				the type of the keys
+	 * @param keyFunction		the function returning the key of a line, or null to ignore the line
+	 * @return the number of lines per key
+	 * @throws IOException in case of IO errors
+	 */
+	public <K> Map<K, Long> countBy(Function<CharSequence, K> keyFunction) throws IOException {
+
+		return scan(HashMap<K, Long>::new, (counts, line) -> {
+			K key = keyFunction.apply(line);
+			if (key != null) {
+				counts.merge(key, 1L, Long::sum);
+			}
+		}, (counts1, counts2) -> {
+			counts2.forEach((key, count) -> counts1.merge(key, count, Long::sum));
+			return counts1;
+		});
+	}
+
+	/**
+	 * Sets the delimiter of the lines or records.
+	 * 
+	 * @param delimiter		the delimiter, the default is '\n'
+	 * @return this scanner
+	 */
+	public ParallelFileScanner delimiter(byte delimiter) {
+
+		this.delimiter = delimiter;
+		return this;
+	}
+
+	/**
+	 * Returns the lines containing a match of a regular expression, in file order.
+	 * 
+	 * @param pattern		the regular expression
+	 * @return the matching lines
+	 * @throws IOException in case of IO errors
+	 */
+	public List<String> grep(Pattern pattern) throws IOException {
+
+		return scan(() -> new GrepResult(pattern), (result, line) -> {
+			if (result.matcher.reset(line).find()) {
+				result.lines.add(line.toString());
+			}
+		}, (result1, result2) -> {
+			result1.lines.addAll(result2.lines);
+			return result1;
+		}).lines;
+	}
+
+	/**
+	 * Sets the pool executing the chunks.
+	 * 
+	 * @param pool		the pool, the default is the common pool
+	 * @return this scanner
+	 */
+	public ParallelFileScanner pool(ForkJoinPool pool) {
+
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Scans the file in parallel.
+	 * 
+	 * @param <A>				the type of the result containers
+	 * @param supplier			creates an empty result container for a chunk
+	 * @param accumulator		adds a line to a result container
+	 * @param combiner			merges two result containers (the first one of the earlier part of the file),
+	 * 							and returns the merged one
+	 * @return the merged result container
+	 * @throws IOException in case of IO errors
+	 */
+	public <A> A scan(Supplier<A> supplier, BiConsumer<A, ? super CharSequence> accumulator, 
+			BinaryOperator<A> combiner) throws IOException {
+
+		long size = Files.size(file);
+		ChunkTask<A> task = new ChunkTask<>(0, size, supplier, accumulator, combiner);
+		try {
+			return (pool == null ? ForkJoinPool.commonPool() : pool).invoke(task);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * The scan of a byte range of the file, split into halves until the chunk size is reached.
+	 * 
+	 * @param <A>		the type of the result containers
+	 */
+	private class ChunkTask<A> extends RecursiveTask<A> {
+
+		/** the serial version */
+		private static final long serialVersionUID = 1L;
+
+		/** the start of the byte range */
+		private final long start;
+		/** the end of the byte range (exclusive) */
+		private final long end;
+		/** creates an empty result container */
+		private final Supplier<A> supplier;
+		/** adds a line to a result container */
+		private final BiConsumer<A, ? super CharSequence> accumulator;
+		/** merges two result containers */
+		private final BinaryOperator<A> combiner;
+
+		/**
+		 * Construction of a task.
+		 * 
+		 * @param start				the start of the byte range
+		 * @param end				the end of the byte range (exclusive)
+		 * @param supplier			creates an empty result container
+		 * @param accumulator		adds a line to a result container
+		 * @param combiner			merges two result containers
+		 */
+		private ChunkTask(long start, long end, Supplier<A> supplier, BiConsumer<A, ? super CharSequence> accumulator, 
+				BinaryOperator<A> combiner) {
+
+			this.start = start;
+			this.end = end;
+			this.supplier = supplier;
+			this.accumulator = accumulator;
+			this.combiner = combiner;
+		}
+
+		@Override
+		protected A compute() {
+
+			if (end - start > chunkSize) {
+				long middle = start + (end - start) / 2;
+				ChunkTask<A> first = new ChunkTask<>(start, middle, supplier, accumulator, combiner);
+				ChunkTask<A> second = new ChunkTask<>(middle, end, supplier, accumulator, combiner);
+				first.fork();
+				A secondResult = second.compute();
+				return combiner.apply(first.join(), secondResult);
+			}
+			A container = supplier.get();
+			try (MappedLineReader reader = new MappedLineReader(file, charset, delimiter, start, end)) {
+				while (reader.next()) {
+					accumulator.accept(container, reader.line());
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return container;
+		}
+	}
+
+	/**
+	 * The result container of a chunk of <code>grep()</code>.
+	 */
+	private static class GrepResult {
+
+		/** the matching lines */
+		private final ArrayList<String> lines = new ArrayList<>();
+		/** the matcher of the chunk */
+		private final Matcher matcher;
+
+		/**
+		 * Construction of a result container.
+		 * 
+		 * @param pattern		the regular expression
+		 */
+		private GrepResult(Pattern pattern) {
+
+			matcher = pattern.matcher("");
+		}
+	}
+}